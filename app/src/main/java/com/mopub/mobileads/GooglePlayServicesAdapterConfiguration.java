@@ -7,16 +7,12 @@ import android.text.TextUtils;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
-import com.google.android.gms.ads.MobileAds;
 import com.mopub.common.BaseAdapterConfiguration;
 import com.mopub.common.OnNetworkInitializationFinishedListener;
 import com.mopub.common.Preconditions;
-import com.mopub.common.logging.MoPubLog;
 
 import java.util.Map;
 
-import static com.mopub.common.logging.MoPubLog.AdapterLogEvent.CUSTOM_WITH_THROWABLE;
-
 public class GooglePlayServicesAdapterConfiguration extends BaseAdapterConfiguration {
 
     private static final String ADAPTER_VERSION = "17.2.0.2";
@@ -24,7 +20,7 @@ public class GooglePlayServicesAdapterConfiguration extends BaseAdapterConfigura
     private static final String KEY_NPA = "npa";
     private static final String MOPUB_NETWORK_NAME = "admob_native";
 
-    private static Bundle npaBundle;
+    private static volatile Bundle npaBundle;
 
     @NonNull
     @Override
@@ -58,43 +54,33 @@ public class GooglePlayServicesAdapterConfiguration extends BaseAdapterConfigura
     @Override
     public void initializeNetwork(@NonNull Context context,
                                   @Nullable Map<String, String> configuration,
-                                  @NonNull OnNetworkInitializationFinishedListener listener) {
+                                  @NonNull final OnNetworkInitializationFinishedListener listener) {
 
         Preconditions.checkNotNull(context);
         Preconditions.checkNotNull(listener);
 
-        boolean networkInitializationSucceeded = false;
-
-        synchronized (GooglePlayServicesAdapterConfiguration.class) {
-            try {
-                if (configuration != null && !configuration.isEmpty()) {
-                    String appId = configuration.get(KEY_EXTRA_APPLICATION_ID);
-
-                    if (!TextUtils.isEmpty(appId)) {
-                        MobileAds.initialize(context, configuration.get(KEY_EXTRA_APPLICATION_ID));
-                    }
+        String appId = null;
+        if (configuration != null && !configuration.isEmpty()) {
+            appId = configuration.get(KEY_EXTRA_APPLICATION_ID);
 
-                    String npaValue = configuration.get(KEY_NPA);
+            String npaValue = configuration.get(KEY_NPA);
 
-                    setNpaBundle(npaValue);
-                } else {
-                    MobileAds.initialize(context);
-                }
-
-                networkInitializationSucceeded = true;
-            } catch (Exception e) {
-                MoPubLog.log(CUSTOM_WITH_THROWABLE,
-                        "Initializing AdMob has encountered " + "an exception.", e);
-            }
+            setNpaBundle(npaValue);
         }
 
-        if (networkInitializationSucceeded) {
-            listener.onNetworkInitializationFinished(GooglePlayServicesAdapterConfiguration.class,
-                    MoPubErrorCode.ADAPTER_INITIALIZATION_SUCCESS);
-        } else {
-            listener.onNetworkInitializationFinished(GooglePlayServicesAdapterConfiguration.class,
-                    MoPubErrorCode.ADAPTER_CONFIGURATION_ERROR);
-        }
+        // The Google Mobile Ads SDK is initialized once, off the main thread, whichever of the
+        // application, this configuration or the native adapter asks first.
+        GooglePlayServicesInitializer.initialize(context, appId,
+                new GooglePlayServicesInitializer.InitializationListener() {
+
+                    @Override
+                    public void onInitializationFinished(boolean success) {
+                        listener.onNetworkInitializationFinished(
+                                GooglePlayServicesAdapterConfiguration.class, success ?
+                                        MoPubErrorCode.ADAPTER_INITIALIZATION_SUCCESS :
+                                        MoPubErrorCode.ADAPTER_CONFIGURATION_ERROR);
+                    }
+                });
     }
 
     public static Bundle getNpaBundle() {
@@ -0,0 +1,127 @@
+package com.mopub.mobileads;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.text.TextUtils;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.android.gms.ads.MobileAds;
+import com.mopub.common.logging.MoPubLog;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.mopub.common.logging.MoPubLog.AdapterLogEvent.CUSTOM;
+import static com.mopub.common.logging.MoPubLog.AdapterLogEvent.CUSTOM_WITH_THROWABLE;
+
+/**
+ * The {@link GooglePlayServicesInitializer} class initializes the Google Mobile Ads SDK once per
+ * process, on a background thread. The application, the adapter configuration and the native
+ * adapter all go through it, so only the first call does any work; later calls are told when
+ * that work has finished.
+ */
+public final class GooglePlayServicesInitializer {
+
+    /**
+     * Listener notified on the main thread once the Google Mobile Ads SDK is initialized.
+     */
+    public interface InitializationListener {
+        void onInitializationFinished(boolean success);
+    }
+
+    private static final int STATE_IDLE = 0;
+    private static final int STATE_RUNNING = 1;
+    private static final int STATE_SUCCEEDED = 2;
+    private static final int STATE_FAILED = 3;
+
+    private static final Handler sHandler = new Handler(Looper.getMainLooper());
+    private static final List<InitializationListener> sListeners = new ArrayList<>();
+
+    private static int sState = STATE_IDLE;
+
+    private GooglePlayServicesInitializer() {
+    }
+
+    /**
+     * Starts initializing the Google Mobile Ads SDK unless it is already initialized or being
+     * initialized. A failed initialization is attempted again by the next call.
+     *
+     * @param context  any context, only its application context is kept.
+     * @param appId    the AdMob application ID, or {@code null} to use the one of the manifest.
+     * @param listener notified on the main thread when initialization finishes, may be
+     *                 {@code null}.
+     */
+    public static void initialize(@NonNull Context context, @Nullable final String appId,
+                                  @Nullable InitializationListener listener) {
+        final Context appContext = context.getApplicationContext() != null ?
+                context.getApplicationContext() : context;
+
+        synchronized (GooglePlayServicesInitializer.class) {
+            if (sState == STATE_SUCCEEDED) {
+                if (listener != null) {
+                    notifyListener(listener, true);
+                }
+                return;
+            }
+            if (listener != null) {
+                sListeners.add(listener);
+            }
+            if (sState == STATE_RUNNING) {
+                return;
+            }
+            sState = STATE_RUNNING;
+        }
+
+        Thread thread = new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                boolean success = false;
+                try {
+                    if (!TextUtils.isEmpty(appId)) {
+                        MobileAds.initialize(appContext, appId);
+                    } else {
+                        MobileAds.initialize(appContext);
+                    }
+                    success = true;
+                    MoPubLog.log(CUSTOM, "Google Mobile Ads SDK initialized.");
+                } catch (Exception e) {
+                    MoPubLog.log(CUSTOM_WITH_THROWABLE,
+                            "Initializing AdMob has encountered an exception.", e);
+                }
+                finish(success);
+            }
+        }, "GoogleMobileAdsInit");
+        thread.start();
+    }
+
+    public static synchronized boolean isInitialized() {
+        return sState == STATE_SUCCEEDED;
+    }
+
+    private static void finish(boolean success) {
+        List<InitializationListener> listeners;
+        synchronized (GooglePlayServicesInitializer.class) {
+            sState = success ? STATE_SUCCEEDED : STATE_FAILED;
+            listeners = new ArrayList<>(sListeners);
+            sListeners.clear();
+        }
+        for (InitializationListener listener : listeners) {
+            notifyListener(listener, success);
+        }
+    }
+
+    private static void notifyListener(@NonNull final InitializationListener listener,
+                                       final boolean success) {
+        sHandler.post(new Runnable() {
+
+            @Override
+            public void run() {
+                listener.onInitializationFinished(success);
+            }
+        });
+    }
+}
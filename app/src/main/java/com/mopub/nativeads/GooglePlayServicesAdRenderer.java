@@ -1,7 +1,6 @@
 package com.mopub.nativeads;
 
 import android.content.Context;
-import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.FrameLayout;
@@ -16,9 +15,10 @@ import com.google.android.gms.ads.formats.MediaView;
 import com.google.android.gms.ads.formats.UnifiedNativeAdView;
 import com.mopub.common.logging.MoPubLog;
 import com.mopub.nativeads.GooglePlayServicesNative.GooglePlayServicesNativeAd;
+import com.transo.admob.test.R;
 
+import java.util.EnumSet;
 import java.util.Map;
-import java.util.WeakHashMap;
 
 import static com.mopub.common.logging.MoPubLog.AdapterLogEvent.CUSTOM;
 import static com.mopub.common.logging.MoPubLog.AdapterLogEvent.CUSTOM_WITH_THROWABLE;
@@ -64,11 +64,6 @@ public class GooglePlayServicesAdRenderer implements MoPubAdRenderer<GooglePlayS
      */
     private final MediaViewBinder mViewBinder;
 
-    /**
-     * A weak hash map used to keep track of view holder so that the views can be properly recycled.
-     */
-    private final WeakHashMap<View, GoogleStaticNativeViewHolder> mViewHolderMap;
-
     /**
      * String to store the simple class name for this adapter.
      */
@@ -76,30 +71,85 @@ public class GooglePlayServicesAdRenderer implements MoPubAdRenderer<GooglePlayS
 
     public GooglePlayServicesAdRenderer(MediaViewBinder viewBinder) {
         this.mViewBinder = viewBinder;
-        this.mViewHolderMap = new WeakHashMap<>();
     }
 
+    /**
+     * The number of ad views kept inflated ahead of time once the first one has been created.
+     */
+    private static final int PREFETCHED_AD_VIEW_COUNT = 2;
+
     @NonNull
     @Override
     public View createAdView(@NonNull Context context, @Nullable ViewGroup parent) {
         MoPubLog.log(CUSTOM, ADAPTER_NAME, "Ad view created.");
-        return LayoutInflater.from(context).inflate(mViewBinder.layoutId, parent, false);
+        GooglePlayServicesAdViewPool pool = GooglePlayServicesAdViewPool.getInstance();
+        View view = pool.obtain(context, mViewBinder.layoutId, parent);
+        // Keep the next views ready for the following ads of the feed.
+        pool.prefill(context, mViewBinder.layoutId, PREFETCHED_AD_VIEW_COUNT);
+        return view;
+    }
+
+    /**
+     * Inflates ad views for this renderer's layout while the main thread is idle, so that the
+     * next calls to {@link #createAdView(Context, ViewGroup)} don't have to.
+     *
+     * @param context the context the ad views will be displayed in.
+     * @param count   the number of views to keep ready.
+     */
+    public void prefetchAdViews(@NonNull Context context, int count) {
+        GooglePlayServicesAdViewPool.getInstance().prefill(context, mViewBinder.layoutId, count);
+    }
+
+    /**
+     * Drops the ad views pre-inflated for the given context, to be called when it is destroyed.
+     *
+     * @param context the context the ad views were inflated with.
+     */
+    public static void releaseAdViews(@NonNull Context context) {
+        GooglePlayServicesAdViewPool.getInstance().clear(context);
+    }
+
+    /**
+     * Hands an ad view that its owner no longer uses back to the pool, so that the next call to
+     * {@link #createAdView(Context, ViewGroup)} can reuse it. Views owned by a RecyclerView are
+     * reused by it and must not be passed here.
+     *
+     * @param view an ad view created by this renderer, detached from its parent.
+     */
+    public static void recycleAdView(@NonNull View view) {
+        GooglePlayServicesAdViewPool.getInstance().recycle(view);
     }
 
     @Override
     public void renderAdView(@NonNull View view, @NonNull GooglePlayServicesNativeAd nativeAd) {
-        GoogleStaticNativeViewHolder viewHolder = mViewHolderMap.get(view);
-        if (viewHolder == null) {
-            viewHolder = GoogleStaticNativeViewHolder.fromViewBinder(view, mViewBinder);
-            mViewHolderMap.put(view, viewHolder);
-        }
-
+        GoogleStaticNativeViewHolder viewHolder = getViewHolder(view);
         UnifiedNativeAdView unifiedAdView = viewHolder.mUnifiedNativeAdView;
         if (unifiedAdView != null) {
             updateUnifiedAdView(nativeAd, viewHolder, unifiedAdView);
         }
     }
 
+    /**
+     * Returns the view holder of the given ad view, resolving it on the first bind. The view
+     * holder is kept on the view itself so that recycled views are only looked up once per view
+     * binder.
+     *
+     * @param view an ad view created by this renderer.
+     * @return the view holder for this renderer's view binder.
+     */
+    @NonNull
+    GoogleStaticNativeViewHolder getViewHolder(@NonNull View view) {
+        Object tag = view.getTag(R.id.google_ad_view_holder);
+        if (tag instanceof GoogleStaticNativeViewHolder &&
+                ((GoogleStaticNativeViewHolder) tag).mViewBinder == mViewBinder) {
+            return (GoogleStaticNativeViewHolder) tag;
+        }
+        GoogleStaticNativeViewHolder viewHolder =
+                GoogleStaticNativeViewHolder.fromViewBinder(view, mViewBinder);
+        view.setTag(R.id.google_ad_view_holder, viewHolder);
+        return viewHolder;
+    }
+
     /**
      * This method will render the given native ad view using the native ad and set the views to
      * Google's native ad view.
@@ -125,15 +175,22 @@ public class GooglePlayServicesAdRenderer implements MoPubAdRenderer<GooglePlayS
                 .addTextView(staticNativeViewHolder.mTextView, staticNativeAd.getText());
         unifiedAdView.setBodyView(staticNativeViewHolder.mTextView);
         if (staticNativeViewHolder.mMediaView != null) {
-            MediaView mediaview = new MediaView(unifiedAdView.getContext());
-            staticNativeViewHolder.mMediaView.removeAllViews();
-            staticNativeViewHolder.mMediaView.addView(mediaview);
+            // Reuse the media view added when this view was first bound.
+            MediaView mediaview = staticNativeViewHolder.mGoogleMediaView;
+            if (mediaview == null) {
+                mediaview = new MediaView(unifiedAdView.getContext());
+                staticNativeViewHolder.mMediaView.removeAllViews();
+                staticNativeViewHolder.mMediaView.addView(mediaview);
+                staticNativeViewHolder.mGoogleMediaView = mediaview;
+            }
             unifiedAdView.setMediaView(mediaview);
         }
         NativeRendererHelper.addTextView(staticNativeViewHolder.mCallToActionView,
                 staticNativeAd.getCallToAction());
         unifiedAdView.setCallToActionView(staticNativeViewHolder.mCallToActionView);
-        NativeImageHelper.loadImageView(staticNativeAd.getIconImageUrl(),
+        // Decoded icons are kept in memory at the size of the icon view, so rebinding an ad
+        // while scrolling doesn't decode it again.
+        GooglePlayServicesBitmapCache.loadImageView(staticNativeAd.getIconImageUrl(),
                 staticNativeViewHolder.mIconImageView);
         unifiedAdView.setIconView(staticNativeViewHolder.mIconImageView);
         if (staticNativeAd.getAdvertiser() != null) {
@@ -141,10 +198,15 @@ public class GooglePlayServicesAdRenderer implements MoPubAdRenderer<GooglePlayS
                     staticNativeAd.getAdvertiser());
             unifiedAdView.setAdvertiserView(staticNativeViewHolder.mAdvertiserTextView);
         }
-        // Add the AdChoices icon to the container if one is provided by the publisher.
-        AdChoicesView adChoicesView = new AdChoicesView(unifiedAdView.getContext());
-        staticNativeViewHolder.mAdChoicesIconContainer.removeAllViews();
-        staticNativeViewHolder.mAdChoicesIconContainer.addView(adChoicesView);
+        // Add the AdChoices icon to the container if one is provided by the publisher, reusing
+        // the one added when this view was first bound.
+        AdChoicesView adChoicesView = staticNativeViewHolder.mAdChoicesView;
+        if (adChoicesView == null) {
+            adChoicesView = new AdChoicesView(unifiedAdView.getContext());
+            staticNativeViewHolder.mAdChoicesIconContainer.removeAllViews();
+            staticNativeViewHolder.mAdChoicesIconContainer.addView(adChoicesView);
+            staticNativeViewHolder.mAdChoicesView = adChoicesView;
+        }
         unifiedAdView.setAdChoicesView(adChoicesView);
 
         // Set the privacy information icon to null as the Google Mobile Ads SDK automatically
@@ -154,6 +216,40 @@ public class GooglePlayServicesAdRenderer implements MoPubAdRenderer<GooglePlayS
                         null, null);
 
         unifiedAdView.setNativeAd(staticNativeAd.getUnifiedNativeAd());
+        staticNativeAd.onRendered();
+    }
+
+    /**
+     * Works out which assets the view binder of this renderer can display, so that the adapter
+     * doesn't download images that would never be shown. Pass the result to
+     * {@code MoPubNative.setLocalExtras()} under
+     * {@link GooglePlayServicesNative#KEY_EXTRA_RENDERABLE_ASSETS}.
+     *
+     * @return the assets with a matching view in the view binder.
+     */
+    @NonNull
+    public EnumSet<RequestParameters.NativeAdAsset> getRenderableAssets() {
+        EnumSet<RequestParameters.NativeAdAsset> assets =
+                EnumSet.noneOf(RequestParameters.NativeAdAsset.class);
+        if (mViewBinder.titleId != 0) {
+            assets.add(RequestParameters.NativeAdAsset.TITLE);
+        }
+        if (mViewBinder.textId != 0) {
+            assets.add(RequestParameters.NativeAdAsset.TEXT);
+        }
+        if (mViewBinder.callToActionId != 0) {
+            assets.add(RequestParameters.NativeAdAsset.CALL_TO_ACTION_TEXT);
+        }
+        if (mViewBinder.iconImageId != 0) {
+            assets.add(RequestParameters.NativeAdAsset.ICON_IMAGE);
+        }
+        if (mViewBinder.mediaLayoutId != 0) {
+            assets.add(RequestParameters.NativeAdAsset.MAIN_IMAGE);
+        }
+        if (mViewBinder.extras.containsKey(VIEW_BINDER_KEY_STAR_RATING)) {
+            assets.add(RequestParameters.NativeAdAsset.STAR_RATING);
+        }
+        return assets;
     }
 
     @Override
@@ -161,8 +257,10 @@ public class GooglePlayServicesAdRenderer implements MoPubAdRenderer<GooglePlayS
         return nativeAd instanceof GooglePlayServicesNativeAd;
     }
 
-    private static class GoogleStaticNativeViewHolder {
+    static class GoogleStaticNativeViewHolder {
 
+        @Nullable
+        MediaViewBinder mViewBinder;
         @Nullable
         View mMainView;
         @Nullable
@@ -189,6 +287,11 @@ public class GooglePlayServicesAdRenderer implements MoPubAdRenderer<GooglePlayS
         FrameLayout mAdChoicesIconContainer;
         @Nullable
         MediaLayout mMediaView;
+        // Child views created on the first bind and reused by later binds.
+        @Nullable
+        MediaView mGoogleMediaView;
+        @Nullable
+        AdChoicesView mAdChoicesView;
 
         private static final GoogleStaticNativeViewHolder EMPTY_VIEW_HOLDER =
                 new GoogleStaticNativeViewHolder();
@@ -197,6 +300,7 @@ public class GooglePlayServicesAdRenderer implements MoPubAdRenderer<GooglePlayS
         public static GoogleStaticNativeViewHolder fromViewBinder(@NonNull View view, @NonNull
                 MediaViewBinder viewBinder) {
             final GoogleStaticNativeViewHolder viewHolder = new GoogleStaticNativeViewHolder();
+            viewHolder.mViewBinder = viewBinder;
             viewHolder.mMainView = view;
             try {
                 viewHolder.mTitleView = (TextView) view.findViewById(viewBinder.titleId);
@@ -0,0 +1,277 @@
+package com.mopub.nativeads;
+
+import android.content.Context;
+import android.os.Looper;
+import android.os.MessageQueue;
+import android.util.Log;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.FrameLayout;
+
+import androidx.annotation.LayoutRes;
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+
+import com.transo.admob.test.R;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The {@link GooglePlayServicesAdViewPool} class keeps a bounded number of inflated ad views per
+ * layout resource. Views are inflated while the main thread is idle and returned to the pool
+ * when their ad is cleared, so that binding an ad rarely has to inflate the
+ * {@code UnifiedNativeAdView} hierarchy on a frame-critical path.
+ * <p>
+ * Pre-inflation is tied to the context it inflates with, so that clearing a context also stops
+ * the views still to be inflated with it.
+ */
+@MainThread
+final class GooglePlayServicesAdViewPool {
+
+    /**
+     * The maximum number of idle views kept per layout resource.
+     */
+    static final int MAX_POOLED_VIEWS = 4;
+
+    /**
+     * Inflates and inspects the pooled views and runs work when the main thread is idle, through
+     * the Android framework outside of tests.
+     */
+    interface Host {
+
+        @NonNull
+        View inflate(@NonNull Context context, @LayoutRes int layoutId,
+                     @Nullable ViewGroup parent);
+
+        /**
+         * @return the layout the view was inflated from by {@link #inflate}, {@code null} for
+         * other views.
+         */
+        @Nullable
+        Integer getLayoutId(@NonNull View view);
+
+        @Nullable
+        Context getContext(@NonNull View view);
+
+        boolean hasParent(@NonNull View view);
+
+        void addIdleHandler(@NonNull MessageQueue.IdleHandler idleHandler);
+
+        void removeIdleHandler(@NonNull MessageQueue.IdleHandler idleHandler);
+    }
+
+    private static final Host ANDROID_HOST = new Host() {
+
+        @NonNull
+        @Override
+        public View inflate(@NonNull Context context, @LayoutRes int layoutId,
+                            @Nullable ViewGroup parent) {
+            // Without a parent the root layout params would be lost, so a throwaway one is used.
+            ViewGroup layoutParent = parent != null ? parent : new FrameLayout(context);
+            View view = LayoutInflater.from(context).inflate(layoutId, layoutParent, false);
+            view.setTag(R.id.google_ad_view_layout_id, layoutId);
+            return view;
+        }
+
+        @Nullable
+        @Override
+        public Integer getLayoutId(@NonNull View view) {
+            Object layoutId = view.getTag(R.id.google_ad_view_layout_id);
+            return layoutId instanceof Integer ? (Integer) layoutId : null;
+        }
+
+        @Nullable
+        @Override
+        public Context getContext(@NonNull View view) {
+            return view.getContext();
+        }
+
+        @Override
+        public boolean hasParent(@NonNull View view) {
+            return view.getParent() != null;
+        }
+
+        @Override
+        public void addIdleHandler(@NonNull MessageQueue.IdleHandler idleHandler) {
+            Looper.myQueue().addIdleHandler(idleHandler);
+        }
+
+        @Override
+        public void removeIdleHandler(@NonNull MessageQueue.IdleHandler idleHandler) {
+            Looper.myQueue().removeIdleHandler(idleHandler);
+        }
+    };
+
+    @Nullable
+    private static GooglePlayServicesAdViewPool sInstance;
+
+    @NonNull
+    private final Host mHost;
+    private final Map<Integer, ArrayDeque<View>> mViews = new HashMap<>();
+    private final List<PrefillTask> mPrefillTasks = new ArrayList<>();
+
+    @VisibleForTesting
+    GooglePlayServicesAdViewPool(@NonNull Host host) {
+        mHost = host;
+    }
+
+    @NonNull
+    static GooglePlayServicesAdViewPool getInstance() {
+        if (sInstance == null) {
+            sInstance = new GooglePlayServicesAdViewPool(ANDROID_HOST);
+        }
+        return sInstance;
+    }
+
+    /**
+     * Returns a pooled view inflated with the given context, or inflates a new one.
+     */
+    @NonNull
+    View obtain(@NonNull Context context, @LayoutRes int layoutId, @Nullable ViewGroup parent) {
+        ArrayDeque<View> views = mViews.get(layoutId);
+        if (views != null) {
+            View view;
+            while ((view = views.poll()) != null) {
+                // Views inflated for another Activity are dropped rather than leaked.
+                if (mHost.getContext(view) == context && !mHost.hasParent(view)) {
+                    return view;
+                }
+            }
+        }
+        return mHost.inflate(context, layoutId, parent);
+    }
+
+    /**
+     * Fills the pool for the given layout up to {@code count} views inflated with the given
+     * context, inflating one view each time the main thread goes idle.
+     */
+    void prefill(@NonNull Context context, @LayoutRes int layoutId, int count) {
+        Iterator<PrefillTask> iterator = mPrefillTasks.iterator();
+        while (iterator.hasNext()) {
+            PrefillTask task = iterator.next();
+            Context taskContext = task.mContext.get();
+            if (taskContext == null) {
+                cancel(task);
+                iterator.remove();
+            } else if (taskContext == context && task.mLayoutId == layoutId) {
+                return;
+            }
+        }
+        PrefillTask task = new PrefillTask(context, layoutId, Math.min(count, MAX_POOLED_VIEWS));
+        mPrefillTasks.add(task);
+        mHost.addIdleHandler(task);
+    }
+
+    /**
+     * Returns a view to the pool. Views still attached to a parent are left alone, since they
+     * may still be on screen.
+     */
+    void recycle(@NonNull View view) {
+        Integer layoutId = mHost.getLayoutId(view);
+        if (layoutId == null || mHost.hasParent(view)) {
+            return;
+        }
+        ArrayDeque<View> views = getViews(layoutId);
+        if (views.size() < MAX_POOLED_VIEWS && !views.contains(view)) {
+            views.offer(view);
+        }
+    }
+
+    /**
+     * Drops all pooled views, along with the contexts they hold, and stops pre-inflating.
+     */
+    void clear() {
+        for (PrefillTask task : mPrefillTasks) {
+            cancel(task);
+        }
+        mPrefillTasks.clear();
+        mViews.clear();
+    }
+
+    /**
+     * Drops the pooled views inflated with the given context, and stops pre-inflating with it.
+     */
+    void clear(@NonNull Context context) {
+        Iterator<PrefillTask> taskIterator = mPrefillTasks.iterator();
+        while (taskIterator.hasNext()) {
+            PrefillTask task = taskIterator.next();
+            Context taskContext = task.mContext.get();
+            if (taskContext == null || taskContext == context) {
+                cancel(task);
+                taskIterator.remove();
+            }
+        }
+        for (ArrayDeque<View> views : mViews.values()) {
+            Iterator<View> viewIterator = views.iterator();
+            while (viewIterator.hasNext()) {
+                if (mHost.getContext(viewIterator.next()) == context) {
+                    viewIterator.remove();
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the number of pre-inflations still running.
+     */
+    @VisibleForTesting
+    int getPrefillTaskCount() {
+        return mPrefillTasks.size();
+    }
+
+    private void cancel(@NonNull PrefillTask task) {
+        task.mCancelled = true;
+        mHost.removeIdleHandler(task);
+    }
+
+    @NonNull
+    private ArrayDeque<View> getViews(@LayoutRes int layoutId) {
+        ArrayDeque<View> views = mViews.get(layoutId);
+        if (views == null) {
+            views = new ArrayDeque<>(MAX_POOLED_VIEWS);
+            mViews.put(layoutId, views);
+        }
+        return views;
+    }
+
+    private class PrefillTask implements MessageQueue.IdleHandler {
+
+        @NonNull
+        private final WeakReference<Context> mContext;
+        @LayoutRes
+        private final int mLayoutId;
+        private final int mTargetCount;
+        private boolean mCancelled;
+
+        PrefillTask(@NonNull Context context, @LayoutRes int layoutId, int targetCount) {
+            this.mContext = new WeakReference<>(context);
+            this.mLayoutId = layoutId;
+            this.mTargetCount = targetCount;
+        }
+
+        @Override
+        public boolean queueIdle() {
+            if (mCancelled) {
+                return false;
+            }
+            Context context = mContext.get();
+            ArrayDeque<View> views = getViews(mLayoutId);
+            if (context == null || views.size() >= mTargetCount) {
+                mPrefillTasks.remove(this);
+                return false;
+            }
+            views.offer(mHost.inflate(context, mLayoutId, null));
+            GooglePlayServicesAdapterLogger.log(Log.DEBUG, "Ad view pre-inflated.");
+            return true;
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.mopub.nativeads;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.transo.admob.test.BuildConfig;
+
+/**
+ * The {@link GooglePlayServicesAdapterLogger} class is the level-gated logger of the Google
+ * adapter. The level is checked before any message is built, so callbacks that fire for every
+ * ad don't allocate when logging is off. In release builds {@link #ENABLED} is a constant
+ * {@code false} and every call compiles down to nothing.
+ */
+public final class GooglePlayServicesAdapterLogger {
+
+    /**
+     * Receives the messages that pass the level check.
+     */
+    public interface Sink {
+        void log(int priority, @NonNull String message);
+    }
+
+    static final boolean ENABLED = BuildConfig.DEBUG;
+
+    private static final String TAG = "AdMobTest";
+
+    private static final Sink LOGCAT_SINK = new Sink() {
+
+        @Override
+        public void log(int priority, @NonNull String message) {
+            Log.println(priority, TAG, message);
+        }
+    };
+
+    private static volatile int sLevel = Log.INFO;
+    @Nullable
+    private static volatile Sink sSink = LOGCAT_SINK;
+
+    private GooglePlayServicesAdapterLogger() {
+    }
+
+    /**
+     * @param level the lowest {@link Log} priority that is logged.
+     */
+    public static void setLevel(int level) {
+        sLevel = level;
+    }
+
+    /**
+     * @param sink where messages go, logcat by default, or {@code null} to drop all of them.
+     */
+    public static void setSink(@Nullable Sink sink) {
+        sSink = sink;
+    }
+
+    public static boolean isLoggable(int priority) {
+        return ENABLED && priority >= sLevel && sSink != null;
+    }
+
+    static void log(int priority, @NonNull String message) {
+        if (ENABLED && isLoggable(priority)) {
+            write(priority, message);
+        }
+    }
+
+    /**
+     * Logs {@code message} followed by {@code value}, concatenated only if the priority is
+     * logged.
+     */
+    static void log(int priority, @NonNull String message, int value) {
+        if (ENABLED && isLoggable(priority)) {
+            write(priority, message + value);
+        }
+    }
+
+    private static void write(int priority, @NonNull String message) {
+        Sink sink = sSink;
+        if (sink != null) {
+            sink.log(priority, message);
+        }
+    }
+}
@@ -0,0 +1,291 @@
+package com.mopub.nativeads;
+
+import android.content.ComponentCallbacks2;
+import android.content.res.Configuration;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.LruCache;
+import android.widget.ImageView;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+import androidx.annotation.WorkerThread;
+
+import com.mopub.common.CacheService;
+import com.mopub.common.logging.MoPubLog;
+import com.transo.admob.test.R;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static com.mopub.common.logging.MoPubLog.AdapterLogEvent.CUSTOM;
+
+/**
+ * The {@link GooglePlayServicesBitmapCache} class keeps decoded ad images in memory, keyed by URL
+ * and target size, so that rebinding an ad while scrolling neither decodes its images again nor
+ * allocates full-size bitmaps for small views. Images are decoded from the
+ * {@link GooglePlayServicesCreativeCache}, or MoPub's disk cache, where
+ * {@link GooglePlayServicesImagePrecacher} puts them, and downsampled to the size of the view
+ * they are shown in.
+ */
+final class GooglePlayServicesBitmapCache {
+
+    /**
+     * String to store the simple class name for this cache.
+     */
+    private static final String ADAPTER_NAME =
+            GooglePlayServicesBitmapCache.class.getSimpleName();
+
+    /**
+     * The share of the heap the cache may use, in bytes.
+     */
+    private static final int MAX_SIZE_BYTES = (int) Math.min(Integer.MAX_VALUE,
+            Runtime.getRuntime().maxMemory() / 32);
+
+    private static final ExecutorService sDecodeExecutor = Executors.newSingleThreadExecutor(
+            runnable -> {
+                Thread thread = new Thread(runnable, "GoogleAdImageDecode");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    /**
+     * Views waiting for an image being decoded, by cache key. Only touched on the main thread,
+     * so that an image is decoded once however many views rebind to it meanwhile.
+     */
+    private static final Map<String, List<WeakReference<ImageView>>> sPendingViews =
+            new HashMap<>();
+
+    /**
+     * Trims the cache when the system runs low on memory, registered with the application
+     * context on first use.
+     */
+    private static final ComponentCallbacks2 sTrimCallbacks = new ComponentCallbacks2() {
+
+        @Override
+        public void onTrimMemory(int level) {
+            trimMemory(level);
+        }
+
+        @Override
+        public void onConfigurationChanged(@NonNull Configuration newConfig) {
+        }
+
+        @Override
+        public void onLowMemory() {
+            trimMemory(ComponentCallbacks2.TRIM_MEMORY_COMPLETE);
+        }
+    };
+
+    private static boolean sTrimCallbacksRegistered;
+
+    // Created on first use rather than with the class, so that the pure helpers below can be
+    // used where the Android framework is not available.
+    @Nullable
+    private static LruCache<String, Bitmap> sBitmaps;
+    @Nullable
+    private static Handler sMainHandler;
+
+    private GooglePlayServicesBitmapCache() {
+    }
+
+    /**
+     * Shows an image in the given view, from memory if it was decoded for the same size before,
+     * otherwise decoded in the background from the disk caches. Images missing from the disk
+     * caches are left to {@link NativeImageHelper#loadImageView(String, ImageView)}.
+     *
+     * @param url       the image URL, if any.
+     * @param imageView the view to show the image in, if any.
+     */
+    @MainThread
+    static void loadImageView(@Nullable final String url, @Nullable ImageView imageView) {
+        if (url == null || imageView == null) {
+            if (imageView != null) {
+                // A decode still pending for the previous image must not show it here.
+                imageView.setTag(R.id.google_ad_image_key, null);
+            }
+            NativeImageHelper.loadImageView(url, imageView);
+            return;
+        }
+        registerTrimCallbacks(imageView);
+        final LruCache<String, Bitmap> bitmaps = getBitmaps();
+        final Handler mainHandler = getMainHandler();
+
+        final int targetWidth = getTargetSize(imageView.getWidth(),
+                imageView.getLayoutParams() != null ? imageView.getLayoutParams().width : 0);
+        final int targetHeight = getTargetSize(imageView.getHeight(),
+                imageView.getLayoutParams() != null ? imageView.getLayoutParams().height : 0);
+        final String key = getKey(url, targetWidth, targetHeight);
+
+        // The key on the view tells a late decode whether the view still shows this image.
+        imageView.setTag(R.id.google_ad_image_key, key);
+        Bitmap bitmap = bitmaps.get(key);
+        if (bitmap != null) {
+            imageView.setImageBitmap(bitmap);
+            return;
+        }
+        imageView.setImageDrawable(null);
+
+        List<WeakReference<ImageView>> pendingViews = sPendingViews.get(key);
+        if (pendingViews != null) {
+            for (WeakReference<ImageView> reference : pendingViews) {
+                if (reference.get() == imageView) {
+                    return;
+                }
+            }
+            pendingViews.add(new WeakReference<>(imageView));
+            return;
+        }
+        pendingViews = new ArrayList<>(1);
+        pendingViews.add(new WeakReference<>(imageView));
+        sPendingViews.put(key, pendingViews);
+        sDecodeExecutor.execute(() -> {
+            final Bitmap decodedBitmap = decode(url, targetWidth, targetHeight);
+            if (decodedBitmap != null) {
+                bitmaps.put(key, decodedBitmap);
+            }
+            mainHandler.post(() -> onDecoded(url, key, decodedBitmap));
+        });
+    }
+
+    @MainThread
+    private static void onDecoded(@NonNull String url, @NonNull String key,
+                                  @Nullable Bitmap bitmap) {
+        List<WeakReference<ImageView>> pendingViews = sPendingViews.remove(key);
+        if (pendingViews == null) {
+            return;
+        }
+        for (WeakReference<ImageView> reference : pendingViews) {
+            ImageView view = reference.get();
+            // Views rebound to another image meanwhile are skipped.
+            if (view == null || !key.equals(view.getTag(R.id.google_ad_image_key))) {
+                continue;
+            }
+            if (bitmap != null) {
+                view.setImageBitmap(bitmap);
+            } else {
+                NativeImageHelper.loadImageView(url, view);
+            }
+        }
+    }
+
+    /**
+     * Releases cached bitmaps according to how badly the system needs memory.
+     *
+     * @param level the level passed to {@link ComponentCallbacks2#onTrimMemory(int)}.
+     */
+    @MainThread
+    static void trimMemory(int level) {
+        LruCache<String, Bitmap> bitmaps = sBitmaps;
+        if (bitmaps == null) {
+            return;
+        }
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_MODERATE ||
+                level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW ||
+                level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL) {
+            bitmaps.evictAll();
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN ||
+                level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_MODERATE) {
+            bitmaps.trimToSize(bitmaps.maxSize() / 2);
+        }
+    }
+
+    @WorkerThread
+    @Nullable
+    private static Bitmap decode(@NonNull String url, int targetWidth, int targetHeight) {
+        GooglePlayServicesCreativeCache creativeCache = GooglePlayServicesCreativeCache.peek();
+        byte[] data = creativeCache != null ? creativeCache.get(url) : null;
+        if (data == null) {
+            data = CacheService.getFromDiskCache(url);
+        }
+        if (data == null) {
+            return null;
+        }
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeByteArray(data, 0, data.length, options);
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            MoPubLog.log(CUSTOM, ADAPTER_NAME, "Could not decode the cached image " + url);
+            return null;
+        }
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = computeSampleSize(options.outWidth, options.outHeight,
+                targetWidth, targetHeight);
+        return BitmapFactory.decodeByteArray(data, 0, data.length, options);
+    }
+
+    /**
+     * @return the largest power of two the image can be divided by while still covering the
+     * target size, {@code 1} when the target size is unknown.
+     */
+    @VisibleForTesting
+    static int computeSampleSize(int width, int height, int targetWidth, int targetHeight) {
+        if (targetWidth <= 0 || targetHeight <= 0) {
+            return 1;
+        }
+        int sampleSize = 1;
+        while (width / (sampleSize * 2) >= targetWidth &&
+                height / (sampleSize * 2) >= targetHeight) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+
+    /**
+     * @return the measured size of the view, or the fixed size of its layout params before the
+     * first layout, {@code 0} if neither is known.
+     */
+    @VisibleForTesting
+    static int getTargetSize(int measuredSize, int layoutParamsSize) {
+        if (measuredSize > 0) {
+            return measuredSize;
+        }
+        return layoutParamsSize > 0 ? layoutParamsSize : 0;
+    }
+
+    @NonNull
+    private static String getKey(@NonNull String url, int targetWidth, int targetHeight) {
+        return url + '#' + targetWidth + 'x' + targetHeight;
+    }
+
+    @MainThread
+    @NonNull
+    private static LruCache<String, Bitmap> getBitmaps() {
+        if (sBitmaps == null) {
+            sBitmaps = new LruCache<String, Bitmap>(MAX_SIZE_BYTES) {
+
+                @Override
+                protected int sizeOf(String key, Bitmap bitmap) {
+                    return bitmap.getAllocationByteCount();
+                }
+            };
+        }
+        return sBitmaps;
+    }
+
+    @MainThread
+    @NonNull
+    private static Handler getMainHandler() {
+        if (sMainHandler == null) {
+            sMainHandler = new Handler(Looper.getMainLooper());
+        }
+        return sMainHandler;
+    }
+
+    private static void registerTrimCallbacks(@NonNull ImageView imageView) {
+        if (!sTrimCallbacksRegistered && imageView.getContext() != null) {
+            imageView.getContext().getApplicationContext()
+                    .registerComponentCallbacks(sTrimCallbacks);
+            sTrimCallbacksRegistered = true;
+        }
+    }
+}
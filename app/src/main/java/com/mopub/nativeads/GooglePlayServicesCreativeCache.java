@@ -0,0 +1,556 @@
+package com.mopub.nativeads;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+import androidx.annotation.WorkerThread;
+
+import com.mopub.common.logging.MoPubLog;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+import static com.mopub.common.logging.MoPubLog.AdapterLogEvent.CUSTOM;
+import static com.mopub.common.logging.MoPubLog.AdapterLogEvent.CUSTOM_WITH_THROWABLE;
+
+/**
+ * The {@link GooglePlayServicesCreativeCache} class keeps downloaded ad images on disk across app
+ * restarts, so that creatives repeating from one session to the next are loaded without network
+ * I/O.
+ * <p>
+ * Images are appended to a data file and located through a fixed-size, memory-mapped index of
+ * {@link #SLOT_COUNT} entries (URL hash, offset, length, checksum, expiry and last access).
+ * An entry is only published, by writing its hash last, once its data has been forced to disk,
+ * and data is checked against its checksum when read, so a crash at any point leaves at worst a
+ * missing entry. Entries are evicted least recently used first once the cached images exceed
+ * the size limit, and the data file is compacted into a new generation when it holds too many
+ * evicted bytes.
+ */
+final class GooglePlayServicesCreativeCache {
+
+    /**
+     * String to store the simple class name for this cache.
+     */
+    private static final String ADAPTER_NAME =
+            GooglePlayServicesCreativeCache.class.getSimpleName();
+
+    static final String DIRECTORY_NAME = "google_ad_creatives";
+    static final long DEFAULT_MAX_SIZE_BYTES = 20 * 1024 * 1024;
+
+    /**
+     * How long an image is kept when its response doesn't say.
+     */
+    static final long DEFAULT_TTL_MILLIS = TimeUnit.DAYS.toMillis(7);
+
+    @VisibleForTesting
+    static final int SLOT_COUNT = 1024;
+
+    /**
+     * Number of consecutive slots an URL hash may be stored in.
+     */
+    private static final int PROBE_COUNT = 8;
+
+    private static final int MAGIC = 0x47414343;
+    private static final int VERSION = 1;
+
+    // Index layout: a header (magic, version, data file generation) followed by the entries.
+    private static final int HEADER_SIZE = 16;
+    private static final int HEADER_GENERATION = 8;
+    private static final int ENTRY_SIZE = 40;
+    private static final int ENTRY_HASH = 0;
+    private static final int ENTRY_OFFSET = 8;
+    private static final int ENTRY_LENGTH = 16;
+    private static final int ENTRY_CHECKSUM = 20;
+    private static final int ENTRY_EXPIRY = 24;
+    private static final int ENTRY_ACCESS = 32;
+    private static final int INDEX_SIZE = HEADER_SIZE + SLOT_COUNT * ENTRY_SIZE;
+
+    private static final String INDEX_FILE_NAME = "index";
+    private static final String INDEX_TEMP_FILE_NAME = "index.tmp";
+    private static final String DATA_FILE_PREFIX = "data.";
+
+    private static final int CONNECT_TIMEOUT_MILLIS = 10000;
+    private static final int READ_TIMEOUT_MILLIS = 10000;
+
+    private static final ExecutorService sExecutor = Executors.newFixedThreadPool(2,
+            runnable -> {
+                Thread thread = new Thread(runnable, "GoogleAdCreativeCache");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    @Nullable
+    private static volatile GooglePlayServicesCreativeCache sInstance;
+
+    @NonNull
+    private final File mDirectory;
+    private final long mMaxSizeBytes;
+
+    private MappedByteBuffer mIndex;
+    private FileChannel mData;
+    private long mGeneration;
+
+    /**
+     * Total length of the images the index refers to, at most the data file length.
+     */
+    private long mLiveBytes;
+
+    /**
+     * Opens the cache in the given directory, discarding whatever can't be trusted.
+     */
+    @WorkerThread
+    GooglePlayServicesCreativeCache(@NonNull File directory, long maxSizeBytes)
+            throws IOException {
+        mDirectory = directory;
+        mMaxSizeBytes = maxSizeBytes;
+        open();
+    }
+
+    /**
+     * @return the cache of the app, opened on first use.
+     */
+    @WorkerThread
+    @NonNull
+    static GooglePlayServicesCreativeCache obtain(@NonNull Context context) throws IOException {
+        GooglePlayServicesCreativeCache cache = sInstance;
+        if (cache != null) {
+            return cache;
+        }
+        synchronized (GooglePlayServicesCreativeCache.class) {
+            if (sInstance == null) {
+                File cacheDir = context.getApplicationContext().getCacheDir();
+                if (cacheDir == null) {
+                    throw new IOException("No cache directory available.");
+                }
+                sInstance = new GooglePlayServicesCreativeCache(
+                        new File(cacheDir, DIRECTORY_NAME), DEFAULT_MAX_SIZE_BYTES);
+            }
+            return sInstance;
+        }
+    }
+
+    /**
+     * @return the cache of the app if it has been opened, {@code null} otherwise.
+     */
+    @Nullable
+    static GooglePlayServicesCreativeCache peek() {
+        return sInstance;
+    }
+
+    /**
+     * Makes sure the given images are on disk, downloading the missing ones, then notifies the
+     * listener on the main thread. Images that can't be cached here are handed to
+     * {@link NativeImageHelper#preCacheImages(Context, List, NativeImageHelper.ImageListener)},
+     * which reports the failure if they can't be cached there either.
+     */
+    static void preCacheImages(@Nullable final Context context,
+                               @NonNull final List<String> imageUrls,
+                               @NonNull final NativeImageHelper.ImageListener imageListener) {
+        if (context == null) {
+            NativeImageHelper.preCacheImages(null, imageUrls, imageListener);
+            return;
+        }
+        // Created per call rather than held statically, so that the cache itself loads where
+        // the Android framework is not available.
+        final Handler mainHandler = new Handler(Looper.getMainLooper());
+        sExecutor.execute(() -> {
+            List<String> missingUrls = new ArrayList<>(imageUrls);
+            try {
+                GooglePlayServicesCreativeCache cache = obtain(context);
+                for (String imageUrl : imageUrls) {
+                    try {
+                        cache.load(imageUrl);
+                        missingUrls.remove(imageUrl);
+                    } catch (IOException e) {
+                        MoPubLog.log(CUSTOM, ADAPTER_NAME,
+                                "Could not cache the creative " + imageUrl + ": " + e);
+                    }
+                }
+            } catch (IOException e) {
+                MoPubLog.log(CUSTOM_WITH_THROWABLE, "Could not open the creative cache.", e);
+            }
+            mainHandler.post(() -> {
+                if (missingUrls.isEmpty()) {
+                    imageListener.onImagesCached();
+                } else {
+                    NativeImageHelper.preCacheImages(context, missingUrls, imageListener);
+                }
+            });
+        });
+    }
+
+    /**
+     * @return the cached image, downloaded and cached first if needed.
+     */
+    @WorkerThread
+    @NonNull
+    byte[] load(@NonNull String url) throws IOException {
+        byte[] data = get(url);
+        if (data != null) {
+            return data;
+        }
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        try {
+            connection.setConnectTimeout(CONNECT_TIMEOUT_MILLIS);
+            connection.setReadTimeout(READ_TIMEOUT_MILLIS);
+            int responseCode = connection.getResponseCode();
+            if (responseCode != HttpURLConnection.HTTP_OK) {
+                throw new IOException("Unexpected response code " + responseCode);
+            }
+            data = readFully(connection.getInputStream());
+            long now = System.currentTimeMillis();
+            long expiresAtMillis = connection.getExpiration() > now ?
+                    connection.getExpiration() : now + DEFAULT_TTL_MILLIS;
+            put(url, data, expiresAtMillis);
+            return data;
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    /**
+     * @return the cached image, or {@code null} if it is missing, expired or damaged.
+     */
+    @WorkerThread
+    @Nullable
+    synchronized byte[] get(@NonNull String url) {
+        long hash = hash(url);
+        int slot = findSlot(hash);
+        if (slot < 0) {
+            return null;
+        }
+        int entry = entryPosition(slot);
+        long now = System.currentTimeMillis();
+        if (mIndex.getLong(entry + ENTRY_EXPIRY) <= now) {
+            removeEntry(slot);
+            return null;
+        }
+        byte[] data = new byte[mIndex.getInt(entry + ENTRY_LENGTH)];
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(data);
+            long offset = mIndex.getLong(entry + ENTRY_OFFSET);
+            while (buffer.hasRemaining()) {
+                if (mData.read(buffer, offset + buffer.position()) < 0) {
+                    throw new IOException("Unexpected end of the data file.");
+                }
+            }
+        } catch (IOException e) {
+            removeEntry(slot);
+            return null;
+        }
+        if (checksum(data) != mIndex.getInt(entry + ENTRY_CHECKSUM)) {
+            removeEntry(slot);
+            return null;
+        }
+        mIndex.putLong(entry + ENTRY_ACCESS, now);
+        return data;
+    }
+
+    /**
+     * Appends an image to the cache, replacing any previous image of the same URL.
+     */
+    @WorkerThread
+    synchronized void put(@NonNull String url, @NonNull byte[] data, long expiresAtMillis)
+            throws IOException {
+        if (data.length > mMaxSizeBytes) {
+            return;
+        }
+        long hash = hash(url);
+        int slot = findSlot(hash);
+        if (slot >= 0) {
+            removeEntry(slot);
+        } else {
+            slot = findFreeSlot(hash);
+        }
+
+        // The data must be on disk before an entry points to it.
+        long offset = mData.size();
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        while (buffer.hasRemaining()) {
+            mData.write(buffer, offset + buffer.position());
+        }
+        mData.force(false);
+
+        int entry = entryPosition(slot);
+        mIndex.putLong(entry + ENTRY_OFFSET, offset);
+        mIndex.putInt(entry + ENTRY_LENGTH, data.length);
+        mIndex.putInt(entry + ENTRY_CHECKSUM, checksum(data));
+        mIndex.putLong(entry + ENTRY_EXPIRY, expiresAtMillis);
+        mIndex.putLong(entry + ENTRY_ACCESS, System.currentTimeMillis());
+        // Publishes the entry.
+        mIndex.putLong(entry + ENTRY_HASH, hash);
+        mLiveBytes += data.length;
+
+        while (mLiveBytes > mMaxSizeBytes) {
+            int leastRecentlyUsedSlot = findLeastRecentlyUsedSlot(0, SLOT_COUNT);
+            if (leastRecentlyUsedSlot < 0) {
+                break;
+            }
+            removeEntry(leastRecentlyUsedSlot);
+        }
+        if (mData.size() > 2 * mMaxSizeBytes) {
+            // The image is stored whether or not compaction works; the next put tries again.
+            try {
+                compact();
+            } catch (IOException e) {
+                MoPubLog.log(CUSTOM_WITH_THROWABLE, "Could not compact the creative cache.", e);
+            }
+        }
+    }
+
+    /**
+     * @return the total length of the cached images.
+     */
+    synchronized long getSizeBytes() {
+        return mLiveBytes;
+    }
+
+    synchronized void close() throws IOException {
+        mIndex.force();
+        mData.close();
+    }
+
+    private void open() throws IOException {
+        if (!mDirectory.isDirectory() && !mDirectory.mkdirs()) {
+            throw new IOException("Could not create " + mDirectory);
+        }
+        mIndex = mapIndex();
+        boolean reset = mIndex.getInt(0) != MAGIC || mIndex.getInt(4) != VERSION;
+        if (reset) {
+            for (int i = 0; i < INDEX_SIZE; i += 8) {
+                mIndex.putLong(i, 0);
+            }
+            mIndex.putInt(0, MAGIC);
+            mIndex.putInt(4, VERSION);
+        }
+        mGeneration = mIndex.getLong(HEADER_GENERATION);
+        mData = new RandomAccessFile(dataFile(mGeneration), "rw").getChannel();
+        if (reset) {
+            mData.truncate(0);
+        }
+        deleteStaleFiles();
+
+        // Drops entries whose data didn't make it to disk.
+        long dataSize = mData.size();
+        mLiveBytes = 0;
+        for (int slot = 0; slot < SLOT_COUNT; slot++) {
+            int entry = entryPosition(slot);
+            if (mIndex.getLong(entry + ENTRY_HASH) == 0) {
+                continue;
+            }
+            long end = mIndex.getLong(entry + ENTRY_OFFSET) + mIndex.getInt(entry + ENTRY_LENGTH);
+            if (mIndex.getInt(entry + ENTRY_LENGTH) < 0 || end > dataSize) {
+                mIndex.putLong(entry + ENTRY_HASH, 0);
+            } else {
+                mLiveBytes += mIndex.getInt(entry + ENTRY_LENGTH);
+            }
+        }
+    }
+
+    /**
+     * Copies the live images to a new data file and switches to it by atomically replacing the
+     * index, so that a crash leaves either the old or the new generation intact. The current
+     * generation stays in use if the new one can't be written.
+     */
+    private void compact() throws IOException {
+        long generation = mGeneration + 1;
+        File tempFile = new File(mDirectory, INDEX_TEMP_FILE_NAME);
+        try {
+            writeGeneration(generation, tempFile);
+        } catch (IOException e) {
+            //noinspection ResultOfMethodCallIgnored
+            dataFile(generation).delete();
+            //noinspection ResultOfMethodCallIgnored
+            tempFile.delete();
+            throw e;
+        }
+
+        mData.close();
+        open();
+        MoPubLog.log(CUSTOM, ADAPTER_NAME, "Compacted the creative cache to " + mLiveBytes +
+                " bytes.");
+    }
+
+    /**
+     * Writes the live images and their index as the given generation, then makes its index the
+     * current one on disk.
+     */
+    private void writeGeneration(long generation, @NonNull File tempFile) throws IOException {
+        ByteBuffer index = ByteBuffer.allocate(INDEX_SIZE);
+        index.putInt(0, MAGIC);
+        index.putInt(4, VERSION);
+        index.putLong(HEADER_GENERATION, generation);
+
+        try (FileChannel data = new RandomAccessFile(dataFile(generation), "rw").getChannel()) {
+            data.truncate(0);
+            long offset = 0;
+            for (int slot = 0; slot < SLOT_COUNT; slot++) {
+                int entry = entryPosition(slot);
+                if (mIndex.getLong(entry + ENTRY_HASH) == 0) {
+                    continue;
+                }
+                long length = mIndex.getInt(entry + ENTRY_LENGTH);
+                mData.transferTo(mIndex.getLong(entry + ENTRY_OFFSET), length, data);
+                for (int i = 0; i < ENTRY_SIZE; i += 8) {
+                    index.putLong(entry + i, mIndex.getLong(entry + i));
+                }
+                index.putLong(entry + ENTRY_OFFSET, offset);
+                offset += length;
+            }
+            data.force(false);
+        }
+
+        try (FileChannel channel = new RandomAccessFile(tempFile, "rw").getChannel()) {
+            channel.truncate(0);
+            while (index.hasRemaining()) {
+                channel.write(index);
+            }
+            channel.force(true);
+        }
+        if (!tempFile.renameTo(new File(mDirectory, INDEX_FILE_NAME))) {
+            throw new IOException("Could not replace the creative cache index.");
+        }
+    }
+
+    @NonNull
+    private MappedByteBuffer mapIndex() throws IOException {
+        try (RandomAccessFile file =
+                     new RandomAccessFile(new File(mDirectory, INDEX_FILE_NAME), "rw")) {
+            if (file.length() != INDEX_SIZE) {
+                file.setLength(0);
+                file.setLength(INDEX_SIZE);
+            }
+            // The mapping stays valid once the file is closed.
+            return file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, INDEX_SIZE);
+        }
+    }
+
+    private void deleteStaleFiles() {
+        String dataFileName = dataFile(mGeneration).getName();
+        File[] files = mDirectory.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            String name = file.getName();
+            if (name.equals(INDEX_TEMP_FILE_NAME) ||
+                    (name.startsWith(DATA_FILE_PREFIX) && !name.equals(dataFileName))) {
+                //noinspection ResultOfMethodCallIgnored
+                file.delete();
+            }
+        }
+    }
+
+    @NonNull
+    private File dataFile(long generation) {
+        return new File(mDirectory, DATA_FILE_PREFIX + generation);
+    }
+
+    /**
+     * @return the slot holding the given hash, {@code -1} if there is none.
+     */
+    private int findSlot(long hash) {
+        int start = (int) ((hash & Long.MAX_VALUE) % SLOT_COUNT);
+        for (int i = 0; i < PROBE_COUNT; i++) {
+            int slot = (start + i) % SLOT_COUNT;
+            if (mIndex.getLong(entryPosition(slot) + ENTRY_HASH) == hash) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return a free slot for the given hash, evicting the least recently used of its slots if
+     * they are all taken.
+     */
+    private int findFreeSlot(long hash) {
+        int start = (int) ((hash & Long.MAX_VALUE) % SLOT_COUNT);
+        for (int i = 0; i < PROBE_COUNT; i++) {
+            int slot = (start + i) % SLOT_COUNT;
+            if (mIndex.getLong(entryPosition(slot) + ENTRY_HASH) == 0) {
+                return slot;
+            }
+        }
+        int slot = findLeastRecentlyUsedSlot(start, PROBE_COUNT);
+        removeEntry(slot);
+        return slot;
+    }
+
+    private int findLeastRecentlyUsedSlot(int start, int count) {
+        int leastRecentlyUsedSlot = -1;
+        long oldestAccess = Long.MAX_VALUE;
+        for (int i = 0; i < count; i++) {
+            int slot = (start + i) % SLOT_COUNT;
+            int entry = entryPosition(slot);
+            if (mIndex.getLong(entry + ENTRY_HASH) != 0 &&
+                    mIndex.getLong(entry + ENTRY_ACCESS) < oldestAccess) {
+                oldestAccess = mIndex.getLong(entry + ENTRY_ACCESS);
+                leastRecentlyUsedSlot = slot;
+            }
+        }
+        return leastRecentlyUsedSlot;
+    }
+
+    private void removeEntry(int slot) {
+        int entry = entryPosition(slot);
+        if (mIndex.getLong(entry + ENTRY_HASH) != 0) {
+            mIndex.putLong(entry + ENTRY_HASH, 0);
+            mLiveBytes -= mIndex.getInt(entry + ENTRY_LENGTH);
+        }
+    }
+
+    private static int entryPosition(int slot) {
+        return HEADER_SIZE + slot * ENTRY_SIZE;
+    }
+
+    /**
+     * @return a 64-bit FNV-1a hash of the URL, never {@code 0}, which marks a free slot.
+     */
+    @VisibleForTesting
+    static long hash(@NonNull String url) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < url.length(); i++) {
+            hash ^= url.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash != 0 ? hash : 1;
+    }
+
+    private static int checksum(@NonNull byte[] data) {
+        CRC32 crc = new CRC32();
+        crc.update(data, 0, data.length);
+        return (int) crc.getValue();
+    }
+
+    @NonNull
+    private static byte[] readFully(@NonNull InputStream inputStream) throws IOException {
+        try (InputStream in = inputStream) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int count;
+            while ((count = in.read(buffer)) != -1) {
+                out.write(buffer, 0, count);
+            }
+            return out.toByteArray();
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package com.mopub.nativeads;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.mopub.nativeads.RequestParameters.NativeAdAsset;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static com.mopub.nativeads.RequestParameters.NativeAdAsset.ICON_IMAGE;
+import static com.mopub.nativeads.RequestParameters.NativeAdAsset.MAIN_IMAGE;
+
+/**
+ * The {@link GooglePlayServicesImagePrecacher} class decides which images of a Google native ad
+ * have to be cached before the ad is reported as loaded, and which ones are only fetched in the
+ * background.
+ */
+class GooglePlayServicesImagePrecacher {
+
+    /**
+     * Downloads and caches images, {@link GooglePlayServicesCreativeCache} outside of tests.
+     */
+    interface ImageLoader {
+        void preCacheImages(@Nullable Context context, @NonNull List<String> imageUrls,
+                            @NonNull NativeImageHelper.ImageListener imageListener);
+    }
+
+    static final ImageLoader DEFAULT_IMAGE_LOADER =
+            GooglePlayServicesCreativeCache::preCacheImages;
+
+    /**
+     * Listener for background fetches, whose result does not gate the ad.
+     */
+    private static final NativeImageHelper.ImageListener IGNORING_IMAGE_LISTENER =
+            new NativeImageHelper.ImageListener() {
+
+                @Override
+                public void onImagesCached() {
+                }
+
+                @Override
+                public void onImagesFailedToCache(NativeErrorCode errorCode) {
+                }
+            };
+
+    @NonNull
+    private final ImageLoader mImageLoader;
+    private final boolean mProgressive;
+    private final boolean mIconRequired;
+
+    /**
+     * The assets the ad view can display, or {@code null} if unknown. Images the view can't
+     * display are not downloaded at all.
+     */
+    @Nullable
+    private final Set<NativeAdAsset> mRenderableAssets;
+
+    GooglePlayServicesImagePrecacher(@NonNull ImageLoader imageLoader, boolean progressive,
+                                     boolean iconRequired,
+                                     @Nullable Set<NativeAdAsset> renderableAssets) {
+        this.mImageLoader = imageLoader;
+        this.mProgressive = progressive;
+        this.mIconRequired = iconRequired;
+        this.mRenderableAssets = renderableAssets;
+    }
+
+    @NonNull
+    @SuppressWarnings("unchecked")
+    static GooglePlayServicesImagePrecacher fromLocalExtras(
+            @NonNull Map<String, Object> localExtras) {
+        Set<NativeAdAsset> renderableAssets = null;
+        Object renderableAssetsExtra =
+                localExtras.get(GooglePlayServicesNative.KEY_EXTRA_RENDERABLE_ASSETS);
+        if (renderableAssetsExtra instanceof Set) {
+            renderableAssets = (Set<NativeAdAsset>) renderableAssetsExtra;
+        }
+
+        return new GooglePlayServicesImagePrecacher(DEFAULT_IMAGE_LOADER,
+                Boolean.TRUE.equals(localExtras.get(
+                        GooglePlayServicesNative.KEY_EXTRA_PROGRESSIVE_IMAGES)),
+                Boolean.TRUE.equals(localExtras.get(
+                        GooglePlayServicesNative.KEY_EXTRA_ICON_REQUIRED)),
+                renderableAssets);
+    }
+
+    /**
+     * @return {@code false} if the policy requires an image the ad does not have.
+     */
+    boolean hasRequiredImages(@Nullable String mainImageUrl, @Nullable String iconImageUrl) {
+        return !mIconRequired || iconImageUrl != null;
+    }
+
+    /**
+     * Caches the images of an ad. The listener is called once all required images are cached,
+     * right away if there are none; optional images are fetched in parallel and their failures
+     * are ignored.
+     *
+     * @param context       required to pre-cache images.
+     * @param mainImageUrl  the main image URL of the ad, if any.
+     * @param iconImageUrl  the icon image URL of the ad, if any.
+     * @param imageListener notified when the required images are cached or failed to cache.
+     */
+    void preCache(@Nullable Context context, @Nullable String mainImageUrl,
+                  @Nullable String iconImageUrl,
+                  @NonNull NativeImageHelper.ImageListener imageListener) {
+        List<String> requiredUrls = new ArrayList<>(2);
+        List<String> optionalUrls = new ArrayList<>(2);
+
+        if (mainImageUrl != null && canRender(MAIN_IMAGE)) {
+            // With the icon required, the main image becomes optional.
+            (mProgressive || mIconRequired ? optionalUrls : requiredUrls).add(mainImageUrl);
+        }
+        if (iconImageUrl != null && canRender(ICON_IMAGE)) {
+            (mProgressive ? optionalUrls : requiredUrls).add(iconImageUrl);
+        }
+
+        for (String optionalUrl : optionalUrls) {
+            mImageLoader.preCacheImages(context, Collections.singletonList(optionalUrl),
+                    IGNORING_IMAGE_LISTENER);
+        }
+
+        if (requiredUrls.isEmpty()) {
+            imageListener.onImagesCached();
+        } else {
+            mImageLoader.preCacheImages(context, requiredUrls, imageListener);
+        }
+    }
+
+    private boolean canRender(@NonNull NativeAdAsset asset) {
+        return mRenderableAssets == null || mRenderableAssets.contains(asset);
+    }
+}
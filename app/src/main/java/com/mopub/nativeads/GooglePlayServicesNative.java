@@ -1,31 +1,29 @@
 package com.mopub.nativeads;
 
 import android.content.Context;
-import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
 import android.text.TextUtils;
 import android.util.Log;
 import android.view.View;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.VisibleForTesting;
 
-import com.google.ads.mediation.admob.AdMobAdapter;
 import com.google.android.gms.ads.AdListener;
 import com.google.android.gms.ads.AdLoader;
 import com.google.android.gms.ads.AdRequest;
-import com.google.android.gms.ads.MobileAds;
 import com.google.android.gms.ads.formats.NativeAdOptions;
 import com.google.android.gms.ads.formats.UnifiedNativeAd;
 import com.mopub.common.logging.MoPubLog;
 import com.mopub.mobileads.GooglePlayServicesAdapterConfiguration;
-import com.transo.admob.test.BuildConfig;
+import com.mopub.mobileads.GooglePlayServicesInitializer;
 
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.atomic.AtomicBoolean;
 
-import static com.google.android.gms.ads.AdRequest.TAG_FOR_UNDER_AGE_OF_CONSENT_FALSE;
-import static com.google.android.gms.ads.AdRequest.TAG_FOR_UNDER_AGE_OF_CONSENT_TRUE;
 import static com.mopub.common.logging.MoPubLog.AdapterLogEvent.CLICKED;
 import static com.mopub.common.logging.MoPubLog.AdapterLogEvent.CUSTOM;
 import static com.mopub.common.logging.MoPubLog.AdapterLogEvent.LOAD_ATTEMPTED;
@@ -51,48 +49,90 @@ public class GooglePlayServicesNative extends CustomEventNative {
     /**
      * Key to set and obtain the image orientation preference.
      */
-    private static final String KEY_EXTRA_ORIENTATION_PREFERENCE = "orientation_preference";
+    static final String KEY_EXTRA_ORIENTATION_PREFERENCE = "orientation_preference";
 
     /**
      * Key to set and obtain the AdChoices icon placement preference.
      */
-    private static final String KEY_EXTRA_AD_CHOICES_PLACEMENT = "ad_choices_placement";
+    static final String KEY_EXTRA_AD_CHOICES_PLACEMENT = "ad_choices_placement";
 
     /**
      * Key to set and obtain the experimental swap margins flag.
      */
-    private static final String KEY_EXPERIMENTAL_EXTRA_SWAP_MARGINS = "swap_margins";
+    static final String KEY_EXPERIMENTAL_EXTRA_SWAP_MARGINS = "swap_margins";
 
     /**
      * String to store the simple class name for this adapter.
      */
     private static final String ADAPTER_NAME = GooglePlayServicesNative.class.getSimpleName();
 
+    /**
+     * How long a request made before the Google Mobile Ads SDK is initialized waits for it.
+     */
+    private static final long INITIALIZATION_TIMEOUT_MILLIS = 10000;
+
     /**
      * Key to set and obtain the content URL to be passed with AdMob's ad request.
      */
-    private static final String KEY_CONTENT_URL = "contentUrl";
+    static final String KEY_CONTENT_URL = "contentUrl";
 
     /**
      * Key to set and obtain the flag whether the application's content is child-directed.
      */
-    private static final String TAG_FOR_CHILD_DIRECTED_KEY = "tagForChildDirectedTreatment";
+    static final String TAG_FOR_CHILD_DIRECTED_KEY = "tagForChildDirectedTreatment";
 
     /**
      * Key to set and obtain the flag to mark ad requests to Google to receive treatment for
      * users in the European Economic Area (EEA) under the age of consent.
      */
-    private static final String TAG_FOR_UNDER_AGE_OF_CONSENT_KEY = "tagForUnderAgeOfConsent";
+    static final String TAG_FOR_UNDER_AGE_OF_CONSENT_KEY = "tagForUnderAgeOfConsent";
 
     /**
      * Key to set and obtain the test device ID String to be passed with AdMob's ad request.
      */
-    private static final String TEST_DEVICES_KEY = "testDevices";
+    static final String TEST_DEVICES_KEY = "testDevices";
+
+    /**
+     * Key to set and obtain the request timeout in milliseconds. A value of zero or less disables
+     * the timeout.
+     */
+    public static final String KEY_EXTRA_REQUEST_TIMEOUT_MILLIS = "request_timeout_millis";
+
+    /**
+     * Key to set and obtain the flag whether a hedged second request may be sent when the first
+     * one is slower than the recent p95 latency.
+     */
+    public static final String KEY_EXTRA_HEDGED_REQUEST = "hedged_request";
+
+    /**
+     * Key to set and obtain the maximum number of retries after a network error.
+     */
+    public static final String KEY_EXTRA_MAX_RETRIES = "max_retries";
 
     /**
-     * Flag to determine whether or not the adapter has been initialized.
+     * Key to set and obtain the number of ads to load in one request. Ads beyond the first are
+     * kept to serve the next requests for the same ad unit.
      */
-    private static AtomicBoolean sIsInitialized = new AtomicBoolean(false);
+    public static final String KEY_EXTRA_BATCH_SIZE = "batch_size";
+
+    /**
+     * Key to set and obtain the flag whether an ad is reported as loaded as soon as its text
+     * assets are valid, with its images fetched in parallel and bound when they arrive.
+     */
+    public static final String KEY_EXTRA_PROGRESSIVE_IMAGES = "progressive_images";
+
+    /**
+     * Key to set and obtain the flag whether ads without an icon are rejected. With this flag set
+     * the main image is optional and failing to cache it doesn't fail the ad.
+     */
+    public static final String KEY_EXTRA_ICON_REQUIRED = "icon_required";
+
+    /**
+     * Key to set and obtain the set of {@link RequestParameters.NativeAdAsset}s the ad view can
+     * display, see {@link GooglePlayServicesAdRenderer#getRenderableAssets()}. Images outside of
+     * this set are not downloaded.
+     */
+    public static final String KEY_EXTRA_RENDERABLE_ASSETS = "renderable_assets";
 
     @NonNull
     private GooglePlayServicesAdapterConfiguration mGooglePlayServicesAdapterConfiguration;
@@ -107,17 +147,9 @@ public class GooglePlayServicesNative extends CustomEventNative {
                                 @NonNull Map<String, Object> localExtras,
                                 @NonNull Map<String, String> serverExtras) {
 
-        if (!sIsInitialized.getAndSet(true)) {
-            if (serverExtras.containsKey(KEY_EXTRA_APPLICATION_ID) &&
-                    !TextUtils.isEmpty(serverExtras.get(KEY_EXTRA_APPLICATION_ID))) {
-                MobileAds.initialize(context, serverExtras.get(KEY_EXTRA_APPLICATION_ID));
-            } else {
-                MobileAds.initialize(context);
-            }
-        }
-
         String adUnitId = serverExtras.get(KEY_EXTRA_AD_UNIT_ID);
         if (TextUtils.isEmpty(adUnitId)) {
+            GooglePlayServicesNativeMetrics.recordFailure(NativeErrorCode.NETWORK_NO_FILL);
             customEventNativeListener.onNativeAdFailed(NativeErrorCode.NETWORK_NO_FILL);
 
             MoPubLog.log(LOAD_FAILED, ADAPTER_NAME, NativeErrorCode.NETWORK_NO_FILL.getIntCode(),
@@ -125,20 +157,120 @@ public class GooglePlayServicesNative extends CustomEventNative {
             return;
         }
 
-        GooglePlayServicesNativeAd nativeAd =
-                new GooglePlayServicesNativeAd(customEventNativeListener);
-        nativeAd.loadAd(context, adUnitId, localExtras);
+        if (GooglePlayServicesInitializer.isInitialized()) {
+            loadNativeAd(context, customEventNativeListener, adUnitId, localExtras);
+        } else {
+            // Only the first caller initializes the Google Mobile Ads SDK, off the main thread.
+            // The request waits for it rather than racing it.
+            new PendingLoad(context, customEventNativeListener, adUnitId, localExtras)
+                    .start(serverExtras.get(KEY_EXTRA_APPLICATION_ID));
+        }
 
         mGooglePlayServicesAdapterConfiguration
                 .setCachedInitializationParameters(context, serverExtras);
     }
 
+    private static void loadNativeAd(@NonNull Context context,
+                                     @NonNull CustomEventNativeListener customEventNativeListener,
+                                     @NonNull String adUnitId,
+                                     @NonNull Map<String, Object> localExtras) {
+        // Serve the surplus of an earlier batch request with the same settings first, if there
+        // is one.
+        GooglePlayServicesRequestTemplate template =
+                GooglePlayServicesRequestTemplate.obtain(adUnitId, localExtras);
+        GooglePlayServicesNativeAd stashedAd = GooglePlayServicesNativeAdStash.poll(template);
+        if (stashedAd != null) {
+            MoPubLog.log(CUSTOM, ADAPTER_NAME, "Serving a Google native ad from an earlier " +
+                    "batch request.");
+            stashedAd.loadStashedAd(context, customEventNativeListener);
+        } else {
+            GooglePlayServicesNativeAd nativeAd =
+                    new GooglePlayServicesNativeAd(customEventNativeListener);
+            nativeAd.loadAd(context, adUnitId, template);
+        }
+    }
+
+    /**
+     * A request made before the Google Mobile Ads SDK is initialized, loaded once it is. The
+     * wait is bounded, so that a stuck initialization fails the request instead of holding it.
+     */
+    private static final class PendingLoad implements Runnable,
+            GooglePlayServicesInitializer.InitializationListener {
+
+        private final Handler mHandler = new Handler(Looper.getMainLooper());
+        private final Context mContext;
+        private final CustomEventNativeListener mCustomEventNativeListener;
+        private final String mAdUnitId;
+        private final Map<String, Object> mLocalExtras;
+        private boolean mSettled;
+
+        PendingLoad(@NonNull Context context,
+                    @NonNull CustomEventNativeListener customEventNativeListener,
+                    @NonNull String adUnitId, @NonNull Map<String, Object> localExtras) {
+            // Initialization may outlive the Activity that made the request.
+            mContext = context.getApplicationContext() != null ?
+                    context.getApplicationContext() : context;
+            mCustomEventNativeListener = customEventNativeListener;
+            mAdUnitId = adUnitId;
+            mLocalExtras = localExtras;
+        }
+
+        void start(String appId) {
+            mHandler.postDelayed(this, INITIALIZATION_TIMEOUT_MILLIS);
+            GooglePlayServicesInitializer.initialize(mContext, appId, this);
+        }
+
+        @Override
+        public void onInitializationFinished(boolean success) {
+            if (mSettled) {
+                return;
+            }
+            mSettled = true;
+            mHandler.removeCallbacks(this);
+            if (success) {
+                loadNativeAd(mContext, mCustomEventNativeListener, mAdUnitId, mLocalExtras);
+            } else {
+                fail(NativeErrorCode.NATIVE_ADAPTER_CONFIGURATION_ERROR);
+            }
+        }
+
+        @Override
+        public void run() {
+            if (mSettled) {
+                return;
+            }
+            mSettled = true;
+            MoPubLog.log(CUSTOM, ADAPTER_NAME, "The Google Mobile Ads SDK did not initialize " +
+                    "in time, failing request.");
+            fail(NativeErrorCode.NETWORK_TIMEOUT);
+        }
+
+        private void fail(@NonNull NativeErrorCode errorCode) {
+            GooglePlayServicesNativeMetrics.recordFailure(errorCode);
+            mCustomEventNativeListener.onNativeAdFailed(errorCode);
+
+            MoPubLog.log(LOAD_FAILED, ADAPTER_NAME, errorCode.getIntCode(), errorCode);
+        }
+    }
+
     /**
      * The {@link GooglePlayServicesNativeAd} class is used to load and map Google native
      * ads to MoPub native ads.
      */
     static class GooglePlayServicesNativeAd extends BaseNativeAd {
 
+        /**
+         * The lifecycle of an ad. Callbacks arriving in a state they don't belong to, such as a
+         * load finishing after the ad was destroyed, are ignored.
+         */
+        enum State {
+            LOADING,
+            LOADED,
+            SHOWN,
+            CLEARED,
+            DESTROYED
+        }
+
         // Native ad assets.
         private String mTitle;
         private String mText;
@@ -167,6 +299,111 @@ public class GooglePlayServicesNative extends CustomEventNative {
          */
         private UnifiedNativeAd mUnifiedNativeAd;
 
+        /**
+         * Handler used to schedule the request timeout, the hedged request and retries.
+         */
+        private final Handler mHandler = new Handler(Looper.getMainLooper());
+
+        /**
+         * The deadline, hedging and retry settings of the current request.
+         */
+        private GooglePlayServicesRequestPolicy mRequestPolicy;
+
+        /**
+         * The lifecycle state, only touched on the main thread.
+         */
+        private State mState = State.LOADING;
+
+        // State of the current request, only touched on the main thread. The context is the
+        // application context, so that pending callbacks never keep an Activity alive.
+        private Context mContext;
+        private String mAdUnitId;
+        private NativeAdOptions mAdOptions;
+        private AdRequest mAdRequest;
+        private GooglePlayServicesRequestTemplate mTemplate;
+        private long mRequestStartMillis;
+        private int mOutstandingRequests;
+        private int mRetriesRemaining;
+        private boolean mRequestSettled;
+
+        /**
+         * Number of ads loaded by one request, one unless batch loading was requested.
+         */
+        private int mBatchSize = 1;
+
+        /**
+         * The ads loaded by the same request as this one. The Google Mobile Ads SDK reports
+         * impressions and clicks per request rather than per ad, so they are dispatched to the
+         * members of the batch.
+         */
+        private List<GooglePlayServicesNativeAd> mBatch;
+        private GooglePlayServicesNativeAd mLastImpressedAd;
+
+        /**
+         * The loader of the current batch request, and the number of its ads skipped for
+         * missing assets while the request is waiting for one that has them all.
+         */
+        private AdLoader mBatchLoader;
+        private int mSkippedBatchAds;
+
+        /**
+         * Decides which images have to be cached before this ad is reported as loaded.
+         */
+        private GooglePlayServicesImagePrecacher mImagePrecacher =
+                new GooglePlayServicesImagePrecacher(
+                        GooglePlayServicesImagePrecacher.DEFAULT_IMAGE_LOADER, false, false, null);
+
+        // Whether this ad has been impressed, kept across clear() and a later prepare().
+        private boolean mImpressed;
+
+        // Lifecycle timestamps feeding GooglePlayServicesNativeMetrics, zero until reached.
+        private long mLoadedAtMillis;
+        private long mRenderedAtMillis;
+        private long mImpressedAtMillis;
+
+        private final Runnable mTimeoutRunnable = new Runnable() {
+
+            @Override
+            public void run() {
+                if (mRequestSettled || mState != State.LOADING) {
+                    return;
+                }
+                settleRequest();
+                MoPubLog.log(CUSTOM, ADAPTER_NAME, "The Google native ad request timed out.");
+                // The attempt took at least this long; leaving it out would bias the p95 low.
+                GooglePlayServicesRequestPolicy.recordLatency(mRequestPolicy.getTimeoutMillis());
+                GooglePlayServicesNativeMetrics.recordFailure(NativeErrorCode.NETWORK_TIMEOUT);
+
+                notifyLoadFailed(NativeErrorCode.NETWORK_TIMEOUT);
+
+                MoPubLog.log(LOAD_FAILED, ADAPTER_NAME,
+                        NativeErrorCode.NETWORK_TIMEOUT.getIntCode(),
+                        NativeErrorCode.NETWORK_TIMEOUT);
+            }
+        };
+
+        private final Runnable mHedgeRunnable = new Runnable() {
+
+            @Override
+            public void run() {
+                if (!mRequestSettled && mState == State.LOADING && mOutstandingRequests == 1) {
+                    MoPubLog.log(CUSTOM, ADAPTER_NAME, "Sending hedged Google native ad request.");
+                    sendRequest();
+                }
+            }
+        };
+
+        private final Runnable mRetryRunnable = new Runnable() {
+
+            @Override
+            public void run() {
+                if (!mRequestSettled && mState == State.LOADING && mOutstandingRequests == 0) {
+                    MoPubLog.log(CUSTOM, ADAPTER_NAME, "Retrying Google native ad request.");
+                    sendRequest();
+                }
+            }
+        };
+
         public GooglePlayServicesNativeAd(CustomEventNativeListener customEventNativeListener) {
             this.mCustomEventNativeListener = customEventNativeListener;
         }
@@ -328,214 +565,320 @@ public class GooglePlayServicesNative extends CustomEventNative {
          */
         public void loadAd(final Context context, String adUnitId,
                            Map<String, Object> localExtras) {
-            AdLoader.Builder builder = new AdLoader.Builder(context, adUnitId);
-            // Get the experimental swap margins extra.
-            if (localExtras.containsKey(KEY_EXPERIMENTAL_EXTRA_SWAP_MARGINS)) {
-                Object swapMarginExtra = localExtras.get(KEY_EXPERIMENTAL_EXTRA_SWAP_MARGINS);
-                if (swapMarginExtra instanceof Boolean) {
-                    mSwapMargins = (boolean) swapMarginExtra;
-                }
+            // Options, request and settings only depend on the ad unit and the local extras, so
+            // they are built once and shared by later requests.
+            loadAd(context, adUnitId,
+                    GooglePlayServicesRequestTemplate.obtain(adUnitId, localExtras));
+        }
+
+        void loadAd(final Context context, String adUnitId,
+                    GooglePlayServicesRequestTemplate template) {
+            mTemplate = template;
+            mSwapMargins = template.shouldSwapMargins();
+            mState = State.LOADING;
+            mContext = context.getApplicationContext() != null ?
+                    context.getApplicationContext() : context;
+            mAdUnitId = adUnitId;
+            mAdOptions = template.getAdOptions();
+            mAdRequest = template.getAdRequest();
+            mRequestPolicy = template.getRequestPolicy();
+            mImagePrecacher = template.getImagePrecacher();
+            mBatchSize = template.getBatchSize();
+            mBatch = new ArrayList<>(mBatchSize);
+            mBatch.add(this);
+            mRetriesRemaining = mRequestPolicy.getMaxRetries();
+            mRequestStartMillis = SystemClock.elapsedRealtime();
+
+            sendRequest();
+
+            if (mRequestPolicy.getTimeoutMillis() > 0) {
+                mHandler.postDelayed(mTimeoutRunnable, mRequestPolicy.getTimeoutMillis());
+            }
+            if (mRequestPolicy.isHedgingEnabled() && mBatchSize == 1) {
+                mHandler.postDelayed(mHedgeRunnable,
+                        GooglePlayServicesRequestPolicy.getHedgeDelayMillis());
             }
 
-            NativeAdOptions.Builder optionsBuilder = new NativeAdOptions.Builder();
+            MoPubLog.log(LOAD_ATTEMPTED, ADAPTER_NAME);
+        }
 
-            // Get the preferred image orientation from the local extras.
-            if (localExtras.containsKey(KEY_EXTRA_ORIENTATION_PREFERENCE) &&
-                    isValidOrientationExtra(localExtras.get(KEY_EXTRA_ORIENTATION_PREFERENCE))) {
-                optionsBuilder.setImageOrientation(
-                        (int) localExtras.get(KEY_EXTRA_ORIENTATION_PREFERENCE));
+        /**
+         * Sends one more ad request with the current request settings. More than one request is
+         * outstanding only while a hedged request races the original one.
+         */
+        private void sendRequest() {
+            mOutstandingRequests++;
+            AdLoader adLoader = buildAdLoader(mContext, SystemClock.elapsedRealtime());
+            if (mBatchSize > 1) {
+                mBatchLoader = adLoader;
+                mSkippedBatchAds = 0;
+                adLoader.loadAds(mAdRequest, mBatchSize);
+            } else {
+                adLoader.loadAd(mAdRequest);
             }
+        }
+
+        /**
+         * Serves this ad, kept from an earlier batch request, to a new request.
+         *
+         * @param context                   required to pre-cache images.
+         * @param customEventNativeListener the listener of the new request.
+         */
+        void loadStashedAd(Context context, CustomEventNativeListener customEventNativeListener) {
+            mState = State.LOADING;
+            mCustomEventNativeListener = customEventNativeListener;
+            onUnifiedAdAvailable(context.getApplicationContext() != null ?
+                    context.getApplicationContext() : context, mUnifiedNativeAd);
+        }
 
-            // Get the preferred AdChoices icon placement from the local extras.
-            if (localExtras.containsKey(KEY_EXTRA_AD_CHOICES_PLACEMENT) &&
-                    isValidAdChoicesPlacementExtra(
-                            localExtras.get(KEY_EXTRA_AD_CHOICES_PLACEMENT))) {
-                optionsBuilder.setAdChoicesPlacement(
-                        (int) localExtras.get(KEY_EXTRA_AD_CHOICES_PLACEMENT));
+        /**
+         * Keeps an ad loaded beyond the first one of a batch request for a later request.
+         *
+         * @param unifiedNativeAd the surplus ad.
+         */
+        private void stashSurplusAd(UnifiedNativeAd unifiedNativeAd) {
+            GooglePlayServicesNativeAd surplusAd = new GooglePlayServicesNativeAd(null);
+            surplusAd.mSwapMargins = mSwapMargins;
+            surplusAd.mImagePrecacher = mImagePrecacher;
+            surplusAd.mUnifiedNativeAd = unifiedNativeAd;
+            mBatch.add(surplusAd);
+            GooglePlayServicesNativeAdStash.offer(mContext, mTemplate, surplusAd);
+        }
+
+        /**
+         * @return the oldest ad of the batch that has been handed to MoPub but not impressed yet.
+         */
+        private GooglePlayServicesNativeAd findImpressionTarget() {
+            for (GooglePlayServicesNativeAd member : mBatch) {
+                if (member.mState == State.LOADED) {
+                    return member;
+                }
             }
+            return this;
+        }
 
-            NativeAdOptions adOptions = optionsBuilder.build();
+        /**
+         * Reports a failed load to MoPub, unless the ad has been cleared or destroyed meanwhile.
+         */
+        private void notifyLoadFailed(NativeErrorCode errorCode) {
+            CustomEventNativeListener listener = mCustomEventNativeListener;
+            if (mState != State.LOADING || listener == null) {
+                return;
+            }
+            listener.onNativeAdFailed(errorCode);
+        }
+
+        /**
+         * Marks the current request as finished, so that late callbacks from a timed out or
+         * hedged request are ignored.
+         */
+        private void settleRequest() {
+            mRequestSettled = true;
+            mHandler.removeCallbacks(mTimeoutRunnable);
+            mHandler.removeCallbacks(mHedgeRunnable);
+            mHandler.removeCallbacks(mRetryRunnable);
+        }
 
-            AdLoader adLoader = builder.forUnifiedNativeAd(
+        /**
+         * @param context           required to request a Google native ad.
+         * @param attemptStartMillis when this attempt is sent, to sample the latency of each
+         *                          attempt rather than of the whole request with its retries.
+         */
+        private AdLoader buildAdLoader(final Context context, final long attemptStartMillis) {
+            AdLoader.Builder builder = new AdLoader.Builder(context, mAdUnitId);
+            return builder.forUnifiedNativeAd(
                     new UnifiedNativeAd.OnUnifiedNativeAdLoadedListener() {
 
                         @Override
                         public void onUnifiedNativeAdLoaded(UnifiedNativeAd unifiedNativeAd) {
-                            Log.i("AdMobTest", "onAdLoaded");
-                            if (!isValidUnifiedAd(unifiedNativeAd)) {
-                                MoPubLog.log(CUSTOM, ADAPTER_NAME, "The Google native unified ad " +
-                                        "is missing one or more required assets, failing request.");
-
-                                mCustomEventNativeListener
-                                        .onNativeAdFailed(NativeErrorCode.NETWORK_NO_FILL);
-
-                                MoPubLog.log(LOAD_FAILED, ADAPTER_NAME,
-                                        NativeErrorCode.NETWORK_NO_FILL.getIntCode(),
-                                        NativeErrorCode.NETWORK_NO_FILL);
+                            GooglePlayServicesAdapterLogger.log(Log.INFO, "onAdLoaded");
+                            if (mState == State.DESTROYED) {
+                                // Late result of a request whose ad is gone.
+                                unifiedNativeAd.destroy();
                                 return;
                             }
-
-                            mUnifiedNativeAd = unifiedNativeAd;
-                            List<com.google.android.gms.ads.formats.NativeAd.Image> images =
-                                    unifiedNativeAd.getImages();
-                            List<String> imageUrls = new ArrayList<>();
-                            com.google.android.gms.ads.formats.NativeAd.Image mainImage =
-                                    images.get(0);
-
-                            // Assuming that the URI provided is an URL.
-                            imageUrls.add(mainImage.getUri().toString());
-
-                            com.google.android.gms.ads.formats.NativeAd.Image iconImage =
-                                    unifiedNativeAd.getIcon();
-                            // Assuming that the URI provided is an URL.
-                            if (iconImage != null) {
-                                imageUrls.add(iconImage.getUri().toString());
+                            if (mRequestSettled) {
+                                if (mBatchSize > 1 && hasRequiredAssets(unifiedNativeAd)) {
+                                    stashSurplusAd(unifiedNativeAd);
+                                } else {
+                                    // Late result of a timed out or hedged request.
+                                    unifiedNativeAd.destroy();
+                                }
+                                return;
                             }
-                            preCacheImages(context, imageUrls);
+                            if (mBatchSize > 1 && !hasRequiredAssets(unifiedNativeAd) &&
+                                    ++mSkippedBatchAds < mBatchSize &&
+                                    mBatchLoader != null && mBatchLoader.isLoading()) {
+                                // A later ad of the batch may still serve this request; it
+                                // fails once the batch is in without one.
+                                GooglePlayServicesAdapterLogger.log(Log.DEBUG,
+                                        "Skipped a batch ad missing required assets.");
+                                unifiedNativeAd.destroy();
+                                return;
+                            }
+                            mOutstandingRequests--;
+                            settleRequest();
+                            long now = SystemClock.elapsedRealtime();
+                            GooglePlayServicesRequestPolicy.recordLatency(
+                                    now - attemptStartMillis);
+                            GooglePlayServicesNativeMetrics.recordLatency(
+                                    GooglePlayServicesNativeMetrics.Stage.REQUEST_TO_LOAD,
+                                    now - mRequestStartMillis);
+                            GooglePlayServicesNativeMetrics.recordFill();
+
+                            onUnifiedAdAvailable(mContext, unifiedNativeAd);
                         }
                     }).withAdListener(new AdListener() {
 
                 @Override
                 public void onAdClicked() {
                     super.onAdClicked();
-                    GooglePlayServicesNativeAd.this.notifyAdClicked();
+                    // The click belongs to the ad of the batch that was impressed last.
+                    GooglePlayServicesNativeAd clickedAd = mLastImpressedAd != null ?
+                            mLastImpressedAd : GooglePlayServicesNativeAd.this;
+                    if (clickedAd.mState == State.DESTROYED) {
+                        return;
+                    }
+                    if (clickedAd.mImpressedAtMillis > 0) {
+                        GooglePlayServicesNativeMetrics.recordLatency(
+                                GooglePlayServicesNativeMetrics.Stage.IMPRESSION_TO_CLICK,
+                                SystemClock.elapsedRealtime() - clickedAd.mImpressedAtMillis);
+                    }
+                    clickedAd.notifyAdClicked();
 
                     MoPubLog.log(CLICKED, ADAPTER_NAME);
-                    Log.i("AdMobTest", "onAdClicked");
+                    GooglePlayServicesAdapterLogger.log(Log.INFO, "onAdClicked");
                 }
 
                 @Override
                 public void onAdImpression() {
                     super.onAdImpression();
-                    GooglePlayServicesNativeAd.this.notifyAdImpressed();
+                    GooglePlayServicesNativeAd impressedAd = findImpressionTarget();
+                    if (impressedAd.mState == State.DESTROYED) {
+                        return;
+                    }
+                    impressedAd.mState = State.SHOWN;
+                    impressedAd.mImpressed = true;
+                    impressedAd.mImpressedAtMillis = SystemClock.elapsedRealtime();
+                    if (impressedAd.mRenderedAtMillis > 0) {
+                        GooglePlayServicesNativeMetrics.recordLatency(
+                                GooglePlayServicesNativeMetrics.Stage.RENDER_TO_IMPRESSION,
+                                impressedAd.mImpressedAtMillis - impressedAd.mRenderedAtMillis);
+                    }
+                    mLastImpressedAd = impressedAd;
+                    impressedAd.notifyAdImpressed();
 
                     MoPubLog.log(SHOW_SUCCESS, ADAPTER_NAME);
-                    Log.i("AdMobTest", "onAdImpression");
+                    GooglePlayServicesAdapterLogger.log(Log.INFO, "onAdImpression");
                 }
 
                 @Override
                 public void onAdFailedToLoad(int errorCode) {
                     super.onAdFailedToLoad(errorCode);
-                    Log.i("AdMobTest", "onAdFailedToLoad: " + errorCode);
-                    switch (errorCode) {
-                        case AdRequest.ERROR_CODE_INTERNAL_ERROR:
-                            mCustomEventNativeListener.onNativeAdFailed(
-                                    NativeErrorCode.NATIVE_ADAPTER_CONFIGURATION_ERROR);
-                            break;
-                        case AdRequest.ERROR_CODE_INVALID_REQUEST:
-                            mCustomEventNativeListener
-                                    .onNativeAdFailed(NativeErrorCode.NETWORK_INVALID_REQUEST);
-                            break;
-                        case AdRequest.ERROR_CODE_NETWORK_ERROR:
-                            mCustomEventNativeListener
-                                    .onNativeAdFailed(NativeErrorCode.CONNECTION_ERROR);
-                            break;
-                        case AdRequest.ERROR_CODE_NO_FILL:
-                            mCustomEventNativeListener
-                                    .onNativeAdFailed(NativeErrorCode.NETWORK_NO_FILL);
-                            break;
-                        default:
-                            mCustomEventNativeListener
-                                    .onNativeAdFailed(NativeErrorCode.UNSPECIFIED);
+                    GooglePlayServicesAdapterLogger.log(Log.INFO, "onAdFailedToLoad: ", errorCode);
+                    if (mRequestSettled || mState != State.LOADING) {
+                        return;
                     }
-                }
-            }).withNativeAdOptions(adOptions).build();
-
-            AdRequest.Builder requestBuilder = new AdRequest.Builder();
-            if (BuildConfig.DEBUG) {
-                requestBuilder.addTestDevice("Your Test Device");
-            }
-            requestBuilder.setRequestAgent("MoPub");
-
-            // Publishers may append a content URL by passing it to the MoPubNative.setLocalExtras() call.
-            String contentUrl = (String) localExtras.get(KEY_CONTENT_URL);
-
-            if (!TextUtils.isEmpty(contentUrl)) {
-                requestBuilder.setContentUrl(contentUrl);
-            }
-
-            // Publishers may request for test ads by passing test device IDs to the MoPubNative.setLocalExtras() call.
-            String testDeviceId = (String) localExtras.get(TEST_DEVICES_KEY);
-
-            if (!TextUtils.isEmpty(testDeviceId) && BuildConfig.DEBUG) {
-                requestBuilder.addTestDevice(testDeviceId);
-            }
-
-            // Consent collected from the MoPub’s consent dialogue should not be used to set up
-            // Google's personalization preference. Publishers should work with Google to be GDPR-compliant.
-            forwardNpaIfSet(requestBuilder);
-
-            // Publishers may want to indicate that their content is child-directed and forward this
-            // information to Google.
-            Boolean childDirected = (Boolean) localExtras.get(TAG_FOR_CHILD_DIRECTED_KEY);
-
-            if (childDirected != null) {
-                requestBuilder.tagForChildDirectedTreatment(childDirected);
-            }
+                    mOutstandingRequests--;
+                    if (mOutstandingRequests > 0) {
+                        // A hedged request is still in flight.
+                        return;
+                    }
+                    if (GooglePlayServicesRequestPolicy.isRetryable(errorCode) &&
+                            mRetriesRemaining > 0) {
+                        // Backs off before retrying; the request timeout still bounds the wait.
+                        long retryDelayMillis = GooglePlayServicesRequestPolicy.getRetryDelayMillis(
+                                mRequestPolicy.getMaxRetries() - mRetriesRemaining);
+                        mRetriesRemaining--;
+                        mHandler.postDelayed(mRetryRunnable, retryDelayMillis);
+                        return;
+                    }
+                    settleRequest();
 
-            // Publishers may want to mark their requests to receive treatment for users in the
-            // European Economic Area (EEA) under the age of consent.
-            Boolean underAgeOfConsent = (Boolean) localExtras.get(TAG_FOR_UNDER_AGE_OF_CONSENT_KEY);
+                    NativeErrorCode nativeErrorCode = toNativeErrorCode(errorCode);
+                    GooglePlayServicesNativeMetrics.recordFailure(nativeErrorCode);
+                    notifyLoadFailed(nativeErrorCode);
 
-            if (underAgeOfConsent != null) {
-                if (underAgeOfConsent) {
-                    requestBuilder.setTagForUnderAgeOfConsent(TAG_FOR_UNDER_AGE_OF_CONSENT_TRUE);
-                } else {
-                    requestBuilder.setTagForUnderAgeOfConsent(TAG_FOR_UNDER_AGE_OF_CONSENT_FALSE);
+                    MoPubLog.log(LOAD_FAILED, ADAPTER_NAME, nativeErrorCode.getIntCode(),
+                            nativeErrorCode);
                 }
-            }
-
-            AdRequest adRequest = requestBuilder.build();
-            adLoader.loadAd(adRequest);
-
-            MoPubLog.log(LOAD_ATTEMPTED, ADAPTER_NAME);
+            }).withNativeAdOptions(mAdOptions).build();
         }
 
-        private void forwardNpaIfSet(AdRequest.Builder builder) {
-
-            // Only forward the "npa" bundle if it is explicitly set. Otherwise, don't attach it with the ad request.
-            Bundle npaBundle = GooglePlayServicesAdapterConfiguration.getNpaBundle();
-
-            if (npaBundle != null && !npaBundle.isEmpty()) {
-                builder.addNetworkExtrasBundle(AdMobAdapter.class, npaBundle);
+        /**
+         * Checks the loaded ad for required assets and pre-caches its images before handing it
+         * to MoPub.
+         *
+         * @param context         required to pre-cache images.
+         * @param unifiedNativeAd the loaded Google ad.
+         */
+        private void onUnifiedAdAvailable(Context context, UnifiedNativeAd unifiedNativeAd) {
+            String mainImageUrl = getMainImageUrl(unifiedNativeAd);
+            String iconImageUrl = getIconImageUrl(unifiedNativeAd);
+
+            if (!isValidUnifiedAd(unifiedNativeAd) ||
+                    !mImagePrecacher.hasRequiredImages(mainImageUrl, iconImageUrl)) {
+                MoPubLog.log(CUSTOM, ADAPTER_NAME, "The Google native unified ad " +
+                        "is missing one or more required assets, failing request.");
+                GooglePlayServicesNativeMetrics.recordFailure(NativeErrorCode.NETWORK_NO_FILL);
+
+                notifyLoadFailed(NativeErrorCode.NETWORK_NO_FILL);
+
+                MoPubLog.log(LOAD_FAILED, ADAPTER_NAME,
+                        NativeErrorCode.NETWORK_NO_FILL.getIntCode(),
+                        NativeErrorCode.NETWORK_NO_FILL);
+                return;
             }
+
+            mUnifiedNativeAd = unifiedNativeAd;
+            mLoadedAtMillis = SystemClock.elapsedRealtime();
+            preCacheImages(context, mainImageUrl, iconImageUrl);
         }
 
         /**
-         * This method will check whether or not the provided extra value can be mapped to
-         * NativeAdOptions' orientation constants.
-         *
-         * @param extra to be checked if it is valid.
-         * @return {@code true} if the extra can be mapped to one of {@link NativeAdOptions}
-         * orientation constants, {@code false} otherwise.
+         * @return whether the ad has the text assets and the images this request requires.
          */
-        private boolean isValidOrientationExtra(Object extra) {
-            if (extra == null || !(extra instanceof Integer)) {
-                return false;
+        private boolean hasRequiredAssets(UnifiedNativeAd unifiedNativeAd) {
+            return isValidUnifiedAd(unifiedNativeAd) && mImagePrecacher.hasRequiredImages(
+                    getMainImageUrl(unifiedNativeAd), getIconImageUrl(unifiedNativeAd));
+        }
+
+        private static String getMainImageUrl(UnifiedNativeAd unifiedNativeAd) {
+            List<com.google.android.gms.ads.formats.NativeAd.Image> images =
+                    unifiedNativeAd.getImages();
+            if (images == null || images.isEmpty()) {
+                return null;
             }
-            Integer preference = (Integer) extra;
-            return (preference == NativeAdOptions.ORIENTATION_ANY ||
-                    preference == NativeAdOptions.ORIENTATION_LANDSCAPE ||
-                    preference == NativeAdOptions.ORIENTATION_PORTRAIT);
+            // Assuming that the URI provided is an URL.
+            return images.get(0).getUri().toString();
+        }
+
+        private static String getIconImageUrl(UnifiedNativeAd unifiedNativeAd) {
+            com.google.android.gms.ads.formats.NativeAd.Image iconImage =
+                    unifiedNativeAd.getIcon();
+            // Assuming that the URI provided is an URL.
+            return iconImage != null ? iconImage.getUri().toString() : null;
         }
 
         /**
-         * Checks whether or not the provided extra value can be mapped to NativeAdOptions'
-         * AdChoices icon placement constants.
+         * Maps the error codes reported by the Google Mobile Ads SDK to MoPub's native error codes.
          *
-         * @param extra to be checked if it is valid.
-         * @return {@code true} if the extra can be mapped to one of {@link NativeAdOptions}
-         * AdChoices icon placement constants, {@code false} otherwise.
+         * @param errorCode the error code reported to {@code AdListener.onAdFailedToLoad}.
+         * @return the matching {@link NativeErrorCode}.
          */
-        private boolean isValidAdChoicesPlacementExtra(Object extra) {
-            if (extra == null || !(extra instanceof Integer)) {
-                return false;
+        private static NativeErrorCode toNativeErrorCode(int errorCode) {
+            switch (errorCode) {
+                case AdRequest.ERROR_CODE_INTERNAL_ERROR:
+                    return NativeErrorCode.NATIVE_ADAPTER_CONFIGURATION_ERROR;
+                case AdRequest.ERROR_CODE_INVALID_REQUEST:
+                    return NativeErrorCode.NETWORK_INVALID_REQUEST;
+                case AdRequest.ERROR_CODE_NETWORK_ERROR:
+                    return NativeErrorCode.CONNECTION_ERROR;
+                case AdRequest.ERROR_CODE_NO_FILL:
+                    return NativeErrorCode.NETWORK_NO_FILL;
+                default:
+                    return NativeErrorCode.UNSPECIFIED;
             }
-            Integer placement = (Integer) extra;
-            return (placement == NativeAdOptions.ADCHOICES_TOP_LEFT ||
-                    placement == NativeAdOptions.ADCHOICES_TOP_RIGHT ||
-                    placement == NativeAdOptions.ADCHOICES_BOTTOM_LEFT ||
-                    placement == NativeAdOptions.ADCHOICES_BOTTOM_RIGHT);
         }
 
         /**
@@ -553,45 +896,89 @@ public class GooglePlayServicesNative extends CustomEventNative {
                     unifiedNativeAd.getCallToAction() != null);
         }
 
+        /**
+         * Called by {@link GooglePlayServicesAdRenderer} once this ad is bound to a view.
+         */
+        void onRendered() {
+            mRenderedAtMillis = SystemClock.elapsedRealtime();
+        }
+
+        /**
+         * @return the current lifecycle state.
+         */
+        State getState() {
+            return mState;
+        }
+
         @Override
         public void prepare(@NonNull View view) {
             // Adding click and impression trackers is handled by the GooglePlayServicesRenderer,
-            // do nothing here.
+            // only a cleared ad being shown again is tracked here.
+            if (mState == State.CLEARED) {
+                mState = mImpressed ? State.SHOWN : State.LOADED;
+            }
         }
 
         @Override
         public void clear(@NonNull View view) {
-            // Called when an ad is no longer displayed to a user.
-
-            mCustomEventNativeListener = null;
-            mUnifiedNativeAd.cancelUnconfirmedClick();
+            // Called when an ad is no longer displayed to a user. The listener is kept, as the
+            // ad may be prepared again and the Google ad listeners route to batch siblings.
+            if (mState == State.DESTROYED) {
+                return;
+            }
+            mState = State.CLEARED;
+            if (mUnifiedNativeAd != null) {
+                mUnifiedNativeAd.cancelUnconfirmedClick();
+            }
         }
 
         @Override
         public void destroy() {
-            // Called when the ad will never be displayed again.
+            // Called when the ad will never be displayed again. Pending callbacks are dropped
+            // and every reference they could reach is released.
+            if (mState == State.DESTROYED) {
+                return;
+            }
+            mState = State.DESTROYED;
+            settleRequest();
+            mCustomEventNativeListener = null;
             if (mUnifiedNativeAd != null) {
                 mUnifiedNativeAd.destroy();
+                mUnifiedNativeAd = null;
             }
         }
 
         /**
          * This method will try to cache images and send success/failure callbacks based on
-         * whether or not the image caching succeeded.
+         * whether or not caching the required images succeeded.
          *
-         * @param context   required to pre-cache images.
-         * @param imageUrls the urls of images that need to be cached.
+         * @param context      required to pre-cache images.
+         * @param mainImageUrl the main image URL, if any.
+         * @param iconImageUrl the icon image URL, if any.
          */
-        private void preCacheImages(Context context, List<String> imageUrls) {
-            NativeImageHelper
-                    .preCacheImages(context, imageUrls, new NativeImageHelper.ImageListener() {
+        private void preCacheImages(Context context, String mainImageUrl, String iconImageUrl) {
+            mImagePrecacher.preCache(context, mainImageUrl, iconImageUrl,
+                    new NativeImageHelper.ImageListener() {
 
                         @Override
                         public void onImagesCached() {
-                            if (mUnifiedNativeAd != null) {
+                            CustomEventNativeListener listener = mCustomEventNativeListener;
+                            if (mState == State.LOADING && listener != null &&
+                                    mUnifiedNativeAd != null) {
+                                long cachedAtMillis = SystemClock.elapsedRealtime();
+                                GooglePlayServicesNativeMetrics.recordLatency(
+                                        GooglePlayServicesNativeMetrics.Stage
+                                                .LOAD_TO_IMAGES_CACHED,
+                                        cachedAtMillis - mLoadedAtMillis);
+
                                 prepareUnifiedNativeAd(mUnifiedNativeAd);
-                                mCustomEventNativeListener
-                                        .onNativeAdLoaded(GooglePlayServicesNativeAd.this);
+                                mState = State.LOADED;
+                                listener.onNativeAdLoaded(GooglePlayServicesNativeAd.this);
+
+                                GooglePlayServicesNativeMetrics.recordLatency(
+                                        GooglePlayServicesNativeMetrics.Stage
+                                                .IMAGES_CACHED_TO_DELIVERED,
+                                        SystemClock.elapsedRealtime() - cachedAtMillis);
 
                                 MoPubLog.log(LOAD_SUCCESS, ADAPTER_NAME);
                             }
@@ -599,7 +986,11 @@ public class GooglePlayServicesNative extends CustomEventNative {
 
                         @Override
                         public void onImagesFailedToCache(NativeErrorCode errorCode) {
-                            mCustomEventNativeListener.onNativeAdFailed(errorCode);
+                            if (mState != State.LOADING) {
+                                return;
+                            }
+                            GooglePlayServicesNativeMetrics.recordFailure(errorCode);
+                            notifyLoadFailed(errorCode);
 
                             MoPubLog.log(LOAD_FAILED, ADAPTER_NAME, errorCode.getIntCode(),
                                     errorCode);
@@ -613,7 +1004,8 @@ public class GooglePlayServicesNative extends CustomEventNative {
          *
          * @param unifiedNativeAd that needs to be mapped to this native ad.
          */
-        private void prepareUnifiedNativeAd(UnifiedNativeAd unifiedNativeAd) {
+        @VisibleForTesting
+        void prepareUnifiedNativeAd(UnifiedNativeAd unifiedNativeAd) {
             List<com.google.android.gms.ads.formats.NativeAd.Image> images =
                     unifiedNativeAd.getImages();
             if (images.size() > 0) {
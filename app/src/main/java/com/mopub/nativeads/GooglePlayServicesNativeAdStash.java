@@ -0,0 +1,151 @@
+package com.mopub.nativeads;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.os.SystemClock;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.mopub.nativeads.GooglePlayServicesNative.GooglePlayServicesNativeAd;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The {@link GooglePlayServicesNativeAdStash} class keeps the surplus ads of a batch request so
+ * that the next request built from the same {@link GooglePlayServicesRequestTemplate} can be
+ * served without a network round trip. Ads are keyed by template rather than by ad unit, since
+ * the extras of a template shape the ad itself: a request with other options, assets, margins
+ * or "npa" bundle never gets an ad loaded for another one.
+ */
+class GooglePlayServicesNativeAdStash {
+
+    /**
+     * Age after which a stashed ad is dropped, kept below the one hour expiry of Google ads.
+     */
+    private static final long TTL_MILLIS = TimeUnit.MINUTES.toMillis(50);
+
+    private static final Map<GooglePlayServicesRequestTemplate, ArrayDeque<Entry>> sEntries =
+            new HashMap<>();
+
+    /**
+     * Drops stashed ads when the system runs low on memory, registered with the application
+     * context on first use.
+     */
+    private static final ComponentCallbacks2 sTrimCallbacks = new ComponentCallbacks2() {
+
+        @Override
+        public void onTrimMemory(int level) {
+            trimMemory(level);
+        }
+
+        @Override
+        public void onConfigurationChanged(@NonNull Configuration newConfig) {
+        }
+
+        @Override
+        public void onLowMemory() {
+            evict(true);
+        }
+    };
+
+    private static boolean sTrimCallbacksRegistered;
+
+    private GooglePlayServicesNativeAdStash() {
+    }
+
+    /**
+     * Stashes an ad, and destroys the stashed ads that expired meanwhile.
+     */
+    static void offer(@NonNull Context context, @NonNull GooglePlayServicesRequestTemplate template,
+                      @NonNull GooglePlayServicesNativeAd nativeAd) {
+        synchronized (GooglePlayServicesNativeAdStash.class) {
+            if (!sTrimCallbacksRegistered) {
+                context.getApplicationContext().registerComponentCallbacks(sTrimCallbacks);
+                sTrimCallbacksRegistered = true;
+            }
+            ArrayDeque<Entry> entries = sEntries.get(template);
+            if (entries == null) {
+                entries = new ArrayDeque<>();
+                sEntries.put(template, entries);
+            }
+            entries.offer(new Entry(nativeAd, SystemClock.elapsedRealtime()));
+        }
+        evict(false);
+    }
+
+    /**
+     * @return the oldest stashed ad of the template that has not expired yet, or {@code null} if
+     * there is none.
+     */
+    @Nullable
+    static GooglePlayServicesNativeAd poll(@NonNull GooglePlayServicesRequestTemplate template) {
+        evict(false);
+        synchronized (GooglePlayServicesNativeAdStash.class) {
+            ArrayDeque<Entry> entries = sEntries.get(template);
+            if (entries == null) {
+                return null;
+            }
+            Entry entry = entries.poll();
+            if (entries.isEmpty()) {
+                sEntries.remove(template);
+            }
+            return entry != null ? entry.nativeAd : null;
+        }
+    }
+
+    /**
+     * Drops stashed ads according to how badly the system needs memory.
+     *
+     * @param level the level passed to {@link ComponentCallbacks2#onTrimMemory(int)}.
+     */
+    static void trimMemory(int level) {
+        evict(level >= ComponentCallbacks2.TRIM_MEMORY_MODERATE ||
+                level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW ||
+                level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL);
+    }
+
+    /**
+     * Destroys the expired stashed ads of every template, or all of them.
+     */
+    private static void evict(boolean all) {
+        List<GooglePlayServicesNativeAd> evictedAds = new ArrayList<>();
+        synchronized (GooglePlayServicesNativeAdStash.class) {
+            long now = SystemClock.elapsedRealtime();
+            Iterator<ArrayDeque<Entry>> iterator = sEntries.values().iterator();
+            while (iterator.hasNext()) {
+                ArrayDeque<Entry> entries = iterator.next();
+                // Entries are stashed in order, so the expired ones are at the head.
+                while (!entries.isEmpty() &&
+                        (all || now - entries.peek().stashedAtMillis >= TTL_MILLIS)) {
+                    evictedAds.add(entries.poll().nativeAd);
+                }
+                if (entries.isEmpty()) {
+                    iterator.remove();
+                }
+            }
+        }
+        // Destroyed outside the lock, since destroying an ad calls into the Google SDK.
+        for (GooglePlayServicesNativeAd nativeAd : evictedAds) {
+            nativeAd.destroy();
+        }
+    }
+
+    private static class Entry {
+
+        final GooglePlayServicesNativeAd nativeAd;
+        final long stashedAtMillis;
+
+        Entry(GooglePlayServicesNativeAd nativeAd, long stashedAtMillis) {
+            this.nativeAd = nativeAd;
+            this.stashedAtMillis = stashedAtMillis;
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package com.mopub.nativeads;
+
+import androidx.annotation.NonNull;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The {@link GooglePlayServicesNativeMetrics} class collects latency histograms for each stage of
+ * a Google native ad's lifecycle, along with fill and failure counters. Recording is lock-free;
+ * {@link #getSnapshot()} reads the current values.
+ */
+public final class GooglePlayServicesNativeMetrics {
+
+    /**
+     * The lifecycle stages whose latency is recorded.
+     */
+    public enum Stage {
+        /**
+         * From sending the request to {@code onUnifiedNativeAdLoaded}.
+         */
+        REQUEST_TO_LOAD,
+        /**
+         * From {@code onUnifiedNativeAdLoaded} to the required images being cached.
+         */
+        LOAD_TO_IMAGES_CACHED,
+        /**
+         * From the images being cached to {@code onNativeAdLoaded} returning.
+         */
+        IMAGES_CACHED_TO_DELIVERED,
+        /**
+         * From the ad being rendered to {@code onAdImpression}.
+         */
+        RENDER_TO_IMPRESSION,
+        /**
+         * From {@code onAdImpression} to {@code onAdClicked}.
+         */
+        IMPRESSION_TO_CLICK
+    }
+
+    /**
+     * Bucket {@code i} counts latencies below {@code 2^i} milliseconds, the last one everything
+     * above.
+     */
+    static final int BUCKET_COUNT = 20;
+
+    private static final Stage[] STAGES = Stage.values();
+    private static final NativeErrorCode[] ERROR_CODES = NativeErrorCode.values();
+
+    private static final AtomicLongArray sBuckets =
+            new AtomicLongArray(STAGES.length * BUCKET_COUNT);
+    private static final AtomicLongArray sSumsMillis = new AtomicLongArray(STAGES.length);
+    private static final AtomicLong sFills = new AtomicLong();
+    private static final AtomicLongArray sFailures = new AtomicLongArray(ERROR_CODES.length);
+
+    private GooglePlayServicesNativeMetrics() {
+    }
+
+    static void recordLatency(@NonNull Stage stage, long latencyMillis) {
+        if (latencyMillis < 0) {
+            return;
+        }
+        sBuckets.incrementAndGet(stage.ordinal() * BUCKET_COUNT + bucketOf(latencyMillis));
+        sSumsMillis.addAndGet(stage.ordinal(), latencyMillis);
+    }
+
+    static void recordFill() {
+        sFills.incrementAndGet();
+    }
+
+    static void recordFailure(@NonNull NativeErrorCode errorCode) {
+        sFailures.incrementAndGet(errorCode.ordinal());
+    }
+
+    static int bucketOf(long latencyMillis) {
+        int bucket = 64 - Long.numberOfLeadingZeros(latencyMillis);
+        return Math.min(bucket, BUCKET_COUNT - 1);
+    }
+
+    /**
+     * @return the values recorded since the process started. Values recorded while the
+     * snapshot is taken may or may not be included.
+     */
+    @NonNull
+    public static Snapshot getSnapshot() {
+        Map<Stage, Histogram> histograms = new EnumMap<>(Stage.class);
+        for (Stage stage : STAGES) {
+            long[] counts = new long[BUCKET_COUNT];
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                counts[i] = sBuckets.get(stage.ordinal() * BUCKET_COUNT + i);
+            }
+            histograms.put(stage, new Histogram(counts, sSumsMillis.get(stage.ordinal())));
+        }
+
+        Map<NativeErrorCode, Long> failures = new EnumMap<>(NativeErrorCode.class);
+        for (NativeErrorCode errorCode : ERROR_CODES) {
+            long count = sFailures.get(errorCode.ordinal());
+            if (count > 0) {
+                failures.put(errorCode, count);
+            }
+        }
+        return new Snapshot(histograms, sFills.get(), failures);
+    }
+
+    /**
+     * Immutable copy of the metrics at one point in time.
+     */
+    public static final class Snapshot {
+
+        @NonNull
+        private final Map<Stage, Histogram> mHistograms;
+        private final long mFills;
+        @NonNull
+        private final Map<NativeErrorCode, Long> mFailures;
+
+        Snapshot(@NonNull Map<Stage, Histogram> histograms, long fills,
+                 @NonNull Map<NativeErrorCode, Long> failures) {
+            this.mHistograms = Collections.unmodifiableMap(histograms);
+            this.mFills = fills;
+            this.mFailures = Collections.unmodifiableMap(failures);
+        }
+
+        @NonNull
+        public Histogram getHistogram(@NonNull Stage stage) {
+            return mHistograms.get(stage);
+        }
+
+        /**
+         * @return the number of requests that returned an ad.
+         */
+        public long getFills() {
+            return mFills;
+        }
+
+        /**
+         * @return the number of failed requests per error code, without the codes that never
+         * occurred.
+         */
+        @NonNull
+        public Map<NativeErrorCode, Long> getFailures() {
+            return mFailures;
+        }
+    }
+
+    /**
+     * Immutable latency histogram with power of two millisecond buckets.
+     */
+    public static final class Histogram {
+
+        @NonNull
+        private final long[] mCounts;
+        private final long mCount;
+        private final long mSumMillis;
+
+        Histogram(@NonNull long[] counts, long sumMillis) {
+            this.mCounts = counts;
+            long count = 0;
+            for (long bucketCount : counts) {
+                count += bucketCount;
+            }
+            this.mCount = count;
+            this.mSumMillis = sumMillis;
+        }
+
+        public long getCount() {
+            return mCount;
+        }
+
+        public long getMeanMillis() {
+            return mCount == 0 ? 0 : mSumMillis / mCount;
+        }
+
+        /**
+         * @param percentile between 0 and 100.
+         * @return the upper bound of the bucket holding the given percentile, zero if nothing was
+         * recorded, or {@link Long#MAX_VALUE} if it falls in the last bucket.
+         */
+        public long getPercentileMillis(double percentile) {
+            if (mCount == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(mCount * percentile / 100));
+            long seen = 0;
+            for (int i = 0; i < mCounts.length - 1; i++) {
+                seen += mCounts[i];
+                if (seen >= rank) {
+                    return 1L << i;
+                }
+            }
+            return Long.MAX_VALUE;
+        }
+
+        /**
+         * @return a copy of the bucket counts, see {@link #getPercentileMillis(double)} for the
+         * bucket bounds.
+         */
+        @NonNull
+        public long[] getBucketCounts() {
+            return mCounts.clone();
+        }
+    }
+}
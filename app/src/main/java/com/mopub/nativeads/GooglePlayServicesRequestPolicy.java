@@ -0,0 +1,133 @@
+package com.mopub.nativeads;
+
+import androidx.annotation.NonNull;
+
+import com.google.android.gms.ads.AdRequest;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * The {@link GooglePlayServicesRequestPolicy} class holds the deadline, hedging and retry
+ * settings for a single Google native ad request, read from the local extras.
+ */
+class GooglePlayServicesRequestPolicy {
+
+    private static final long DEFAULT_TIMEOUT_MILLIS = 10000;
+    private static final int DEFAULT_MAX_RETRIES = 1;
+
+    /**
+     * Delay before the first retry, doubled for each following one.
+     */
+    private static final long RETRY_DELAY_MILLIS = 1000;
+
+    /**
+     * Hedge delay used until enough latency samples have been collected.
+     */
+    private static final long DEFAULT_HEDGE_DELAY_MILLIS = 3000;
+    private static final long MIN_HEDGE_DELAY_MILLIS = 500;
+
+    private static final int LATENCY_SAMPLE_COUNT = 32;
+    private static final int MIN_LATENCY_SAMPLES = 8;
+
+    /**
+     * Ring buffer of recent request→load latencies, shared by all requests.
+     */
+    private static final long[] sLatencySamples = new long[LATENCY_SAMPLE_COUNT];
+    private static int sLatencySampleSize;
+    private static int sLatencySampleIndex;
+
+    private final long mTimeoutMillis;
+    private final boolean mHedgingEnabled;
+    private final int mMaxRetries;
+
+    private GooglePlayServicesRequestPolicy(long timeoutMillis, boolean hedgingEnabled,
+                                            int maxRetries) {
+        this.mTimeoutMillis = timeoutMillis;
+        this.mHedgingEnabled = hedgingEnabled;
+        this.mMaxRetries = maxRetries;
+    }
+
+    @NonNull
+    static GooglePlayServicesRequestPolicy fromLocalExtras(
+            @NonNull Map<String, Object> localExtras) {
+        long timeoutMillis = DEFAULT_TIMEOUT_MILLIS;
+        Object timeoutExtra =
+                localExtras.get(GooglePlayServicesNative.KEY_EXTRA_REQUEST_TIMEOUT_MILLIS);
+        if (timeoutExtra instanceof Number) {
+            timeoutMillis = ((Number) timeoutExtra).longValue();
+        }
+
+        boolean hedgingEnabled = false;
+        Object hedgedExtra = localExtras.get(GooglePlayServicesNative.KEY_EXTRA_HEDGED_REQUEST);
+        if (hedgedExtra instanceof Boolean) {
+            hedgingEnabled = (boolean) hedgedExtra;
+        }
+
+        int maxRetries = DEFAULT_MAX_RETRIES;
+        Object retriesExtra = localExtras.get(GooglePlayServicesNative.KEY_EXTRA_MAX_RETRIES);
+        if (retriesExtra instanceof Integer) {
+            maxRetries = Math.max(0, (int) retriesExtra);
+        }
+
+        return new GooglePlayServicesRequestPolicy(timeoutMillis, hedgingEnabled, maxRetries);
+    }
+
+    /**
+     * @return the request deadline, or zero or less if the request has none.
+     */
+    long getTimeoutMillis() {
+        return mTimeoutMillis;
+    }
+
+    boolean isHedgingEnabled() {
+        return mHedgingEnabled;
+    }
+
+    int getMaxRetries() {
+        return mMaxRetries;
+    }
+
+    /**
+     * Only transient network errors are worth another attempt; no fill and invalid requests
+     * would fail the same way again.
+     *
+     * @param errorCode the error code reported to {@code AdListener.onAdFailedToLoad}.
+     * @return {@code true} if the request may be retried, {@code false} otherwise.
+     */
+    static boolean isRetryable(int errorCode) {
+        return errorCode == AdRequest.ERROR_CODE_NETWORK_ERROR;
+    }
+
+    /**
+     * @param retryCount the number of retries sent before this one.
+     * @return the delay before the retry, so that a failing network isn't hit again right away.
+     */
+    static long getRetryDelayMillis(int retryCount) {
+        return RETRY_DELAY_MILLIS << Math.min(retryCount, 10);
+    }
+
+    /**
+     * @return the delay after which a hedged request is sent, derived from the p95 of recent
+     * request latencies.
+     */
+    static synchronized long getHedgeDelayMillis() {
+        if (sLatencySampleSize < MIN_LATENCY_SAMPLES) {
+            return DEFAULT_HEDGE_DELAY_MILLIS;
+        }
+        long[] samples = Arrays.copyOf(sLatencySamples, sLatencySampleSize);
+        Arrays.sort(samples);
+        int index = (int) Math.ceil(samples.length * 0.95) - 1;
+        return Math.max(MIN_HEDGE_DELAY_MILLIS, samples[index]);
+    }
+
+    /**
+     * Records the latency of one request attempt, or the timeout of an attempt that timed out,
+     * so that slow requests aren't left out of the p95.
+     */
+    static synchronized void recordLatency(long latencyMillis) {
+        sLatencySamples[sLatencySampleIndex] = latencyMillis;
+        sLatencySampleIndex = (sLatencySampleIndex + 1) % LATENCY_SAMPLE_COUNT;
+        sLatencySampleSize = Math.min(sLatencySampleSize + 1, LATENCY_SAMPLE_COUNT);
+    }
+}
@@ -0,0 +1,290 @@
+package com.mopub.nativeads;
+
+import android.os.Bundle;
+import android.text.TextUtils;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.ads.mediation.admob.AdMobAdapter;
+import com.google.android.gms.ads.AdRequest;
+import com.google.android.gms.ads.formats.NativeAdOptions;
+import com.mopub.mobileads.GooglePlayServicesAdapterConfiguration;
+import com.transo.admob.test.BuildConfig;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.google.android.gms.ads.AdRequest.TAG_FOR_UNDER_AGE_OF_CONSENT_FALSE;
+import static com.google.android.gms.ads.AdRequest.TAG_FOR_UNDER_AGE_OF_CONSENT_TRUE;
+import static com.mopub.nativeads.GooglePlayServicesNative.KEY_CONTENT_URL;
+import static com.mopub.nativeads.GooglePlayServicesNative.KEY_EXPERIMENTAL_EXTRA_SWAP_MARGINS;
+import static com.mopub.nativeads.GooglePlayServicesNative.KEY_EXTRA_AD_CHOICES_PLACEMENT;
+import static com.mopub.nativeads.GooglePlayServicesNative.KEY_EXTRA_BATCH_SIZE;
+import static com.mopub.nativeads.GooglePlayServicesNative.KEY_EXTRA_HEDGED_REQUEST;
+import static com.mopub.nativeads.GooglePlayServicesNative.KEY_EXTRA_ICON_REQUIRED;
+import static com.mopub.nativeads.GooglePlayServicesNative.KEY_EXTRA_MAX_RETRIES;
+import static com.mopub.nativeads.GooglePlayServicesNative.KEY_EXTRA_ORIENTATION_PREFERENCE;
+import static com.mopub.nativeads.GooglePlayServicesNative.KEY_EXTRA_PROGRESSIVE_IMAGES;
+import static com.mopub.nativeads.GooglePlayServicesNative.KEY_EXTRA_RENDERABLE_ASSETS;
+import static com.mopub.nativeads.GooglePlayServicesNative.KEY_EXTRA_REQUEST_TIMEOUT_MILLIS;
+import static com.mopub.nativeads.GooglePlayServicesNative.TAG_FOR_CHILD_DIRECTED_KEY;
+import static com.mopub.nativeads.GooglePlayServicesNative.TAG_FOR_UNDER_AGE_OF_CONSENT_KEY;
+import static com.mopub.nativeads.GooglePlayServicesNative.TEST_DEVICES_KEY;
+
+/**
+ * The {@link GooglePlayServicesRequestTemplate} class holds everything a Google native ad
+ * request derives from its ad unit and local extras: the {@link NativeAdOptions}, the
+ * {@link AdRequest} and the request settings. These rarely change for a given ad unit, so
+ * templates are cached and shared by all requests with the same ad unit and extras.
+ * <p>
+ * A template is rebuilt when the "npa" bundle of {@link GooglePlayServicesAdapterConfiguration}
+ * changes, since it is attached to the {@link AdRequest}.
+ */
+final class GooglePlayServicesRequestTemplate {
+
+    /**
+     * The local extras keys a template depends on, in fingerprint order.
+     */
+    private static final String[] FINGERPRINT_KEYS = {
+            KEY_EXPERIMENTAL_EXTRA_SWAP_MARGINS,
+            KEY_EXTRA_ORIENTATION_PREFERENCE,
+            KEY_EXTRA_AD_CHOICES_PLACEMENT,
+            KEY_CONTENT_URL,
+            TEST_DEVICES_KEY,
+            TAG_FOR_CHILD_DIRECTED_KEY,
+            TAG_FOR_UNDER_AGE_OF_CONSENT_KEY,
+            KEY_EXTRA_REQUEST_TIMEOUT_MILLIS,
+            KEY_EXTRA_HEDGED_REQUEST,
+            KEY_EXTRA_MAX_RETRIES,
+            KEY_EXTRA_BATCH_SIZE,
+            KEY_EXTRA_PROGRESSIVE_IMAGES,
+            KEY_EXTRA_ICON_REQUIRED,
+            KEY_EXTRA_RENDERABLE_ASSETS
+    };
+
+    /**
+     * The maximum number of ads the Google Mobile Ads SDK loads in one request.
+     */
+    private static final int MAX_BATCH_SIZE = 5;
+
+    private static final int MAX_CACHED_TEMPLATES = 16;
+
+    private static final Map<List<Object>, GooglePlayServicesRequestTemplate> sTemplates =
+            new LinkedHashMap<List<Object>, GooglePlayServicesRequestTemplate>(
+                    MAX_CACHED_TEMPLATES, 0.75f, true) {
+
+                @Override
+                protected boolean removeEldestEntry(
+                        Map.Entry<List<Object>, GooglePlayServicesRequestTemplate> eldest) {
+                    return size() > MAX_CACHED_TEMPLATES;
+                }
+            };
+
+    @NonNull
+    private final NativeAdOptions mAdOptions;
+    @NonNull
+    private final AdRequest mAdRequest;
+    @NonNull
+    private final GooglePlayServicesRequestPolicy mRequestPolicy;
+    @NonNull
+    private final GooglePlayServicesImagePrecacher mImagePrecacher;
+    private final boolean mSwapMargins;
+    private final int mBatchSize;
+
+    /**
+     * The "npa" bundle the request was built with, compared by identity to detect changes.
+     */
+    @Nullable
+    private final Bundle mNpaBundle;
+
+    private GooglePlayServicesRequestTemplate(@NonNull Map<String, Object> localExtras,
+                                              @Nullable Bundle npaBundle) {
+        mAdOptions = buildAdOptions(localExtras);
+        mAdRequest = buildAdRequest(localExtras, npaBundle);
+        mRequestPolicy = GooglePlayServicesRequestPolicy.fromLocalExtras(localExtras);
+        mImagePrecacher = GooglePlayServicesImagePrecacher.fromLocalExtras(localExtras);
+        mNpaBundle = npaBundle;
+
+        // Get the experimental swap margins extra.
+        mSwapMargins =
+                Boolean.TRUE.equals(localExtras.get(KEY_EXPERIMENTAL_EXTRA_SWAP_MARGINS));
+
+        Object batchSizeExtra = localExtras.get(KEY_EXTRA_BATCH_SIZE);
+        mBatchSize = batchSizeExtra instanceof Integer ?
+                Math.max(1, Math.min(MAX_BATCH_SIZE, (int) batchSizeExtra)) : 1;
+    }
+
+    /**
+     * Returns the cached template for the given ad unit and local extras, building it if needed.
+     *
+     * @param adUnitId    Google's AdMob Ad Unit ID.
+     * @param localExtras the local extras of the request.
+     * @return the request template.
+     */
+    @NonNull
+    static synchronized GooglePlayServicesRequestTemplate obtain(
+            @NonNull String adUnitId, @NonNull Map<String, Object> localExtras) {
+        Object[] fingerprint = new Object[FINGERPRINT_KEYS.length + 1];
+        fingerprint[0] = adUnitId;
+        for (int i = 0; i < FINGERPRINT_KEYS.length; i++) {
+            fingerprint[i + 1] = localExtras.get(FINGERPRINT_KEYS[i]);
+        }
+        List<Object> key = Arrays.asList(fingerprint);
+
+        Bundle npaBundle = GooglePlayServicesAdapterConfiguration.getNpaBundle();
+        GooglePlayServicesRequestTemplate template = sTemplates.get(key);
+        if (template == null || template.mNpaBundle != npaBundle) {
+            template = new GooglePlayServicesRequestTemplate(localExtras, npaBundle);
+            sTemplates.put(key, template);
+        }
+        return template;
+    }
+
+    @NonNull
+    NativeAdOptions getAdOptions() {
+        return mAdOptions;
+    }
+
+    @NonNull
+    AdRequest getAdRequest() {
+        return mAdRequest;
+    }
+
+    @NonNull
+    GooglePlayServicesRequestPolicy getRequestPolicy() {
+        return mRequestPolicy;
+    }
+
+    @NonNull
+    GooglePlayServicesImagePrecacher getImagePrecacher() {
+        return mImagePrecacher;
+    }
+
+    boolean shouldSwapMargins() {
+        return mSwapMargins;
+    }
+
+    /**
+     * @return the number of ads to load per request, one unless batch loading was requested.
+     */
+    int getBatchSize() {
+        return mBatchSize;
+    }
+
+    @NonNull
+    private static NativeAdOptions buildAdOptions(@NonNull Map<String, Object> localExtras) {
+        NativeAdOptions.Builder optionsBuilder = new NativeAdOptions.Builder();
+
+        // Get the preferred image orientation from the local extras.
+        Object orientationExtra = localExtras.get(KEY_EXTRA_ORIENTATION_PREFERENCE);
+        if (isValidOrientationExtra(orientationExtra)) {
+            optionsBuilder.setImageOrientation((int) orientationExtra);
+        }
+
+        // Get the preferred AdChoices icon placement from the local extras.
+        Object adChoicesPlacementExtra = localExtras.get(KEY_EXTRA_AD_CHOICES_PLACEMENT);
+        if (isValidAdChoicesPlacementExtra(adChoicesPlacementExtra)) {
+            optionsBuilder.setAdChoicesPlacement((int) adChoicesPlacementExtra);
+        }
+
+        return optionsBuilder.build();
+    }
+
+    @NonNull
+    private static AdRequest buildAdRequest(@NonNull Map<String, Object> localExtras,
+                                            @Nullable Bundle npaBundle) {
+        AdRequest.Builder requestBuilder = new AdRequest.Builder();
+        if (BuildConfig.DEBUG) {
+            requestBuilder.addTestDevice("Your Test Device");
+        }
+        requestBuilder.setRequestAgent("MoPub");
+
+        // Publishers may append a content URL by passing it to the MoPubNative.setLocalExtras()
+        // call.
+        Object contentUrl = localExtras.get(KEY_CONTENT_URL);
+
+        if (contentUrl instanceof String && !TextUtils.isEmpty((String) contentUrl)) {
+            requestBuilder.setContentUrl((String) contentUrl);
+        }
+
+        // Publishers may request for test ads by passing test device IDs to the
+        // MoPubNative.setLocalExtras() call.
+        Object testDeviceId = localExtras.get(TEST_DEVICES_KEY);
+
+        if (testDeviceId instanceof String && !TextUtils.isEmpty((String) testDeviceId) &&
+                BuildConfig.DEBUG) {
+            requestBuilder.addTestDevice((String) testDeviceId);
+        }
+
+        // Consent collected from the MoPub’s consent dialogue should not be used to set up
+        // Google's personalization preference. Publishers should work with Google to be
+        // GDPR-compliant.
+        // Only forward the "npa" bundle if it is explicitly set. Otherwise, don't attach it with
+        // the ad request.
+        if (npaBundle != null && !npaBundle.isEmpty()) {
+            requestBuilder.addNetworkExtrasBundle(AdMobAdapter.class, npaBundle);
+        }
+
+        // Publishers may want to indicate that their content is child-directed and forward this
+        // information to Google.
+        Object childDirected = localExtras.get(TAG_FOR_CHILD_DIRECTED_KEY);
+
+        if (childDirected instanceof Boolean) {
+            requestBuilder.tagForChildDirectedTreatment((boolean) childDirected);
+        }
+
+        // Publishers may want to mark their requests to receive treatment for users in the
+        // European Economic Area (EEA) under the age of consent.
+        Object underAgeOfConsent = localExtras.get(TAG_FOR_UNDER_AGE_OF_CONSENT_KEY);
+
+        if (underAgeOfConsent instanceof Boolean) {
+            if ((boolean) underAgeOfConsent) {
+                requestBuilder.setTagForUnderAgeOfConsent(TAG_FOR_UNDER_AGE_OF_CONSENT_TRUE);
+            } else {
+                requestBuilder.setTagForUnderAgeOfConsent(TAG_FOR_UNDER_AGE_OF_CONSENT_FALSE);
+            }
+        }
+
+        return requestBuilder.build();
+    }
+
+    /**
+     * This method will check whether or not the provided extra value can be mapped to
+     * NativeAdOptions' orientation constants.
+     *
+     * @param extra to be checked if it is valid.
+     * @return {@code true} if the extra can be mapped to one of {@link NativeAdOptions}
+     * orientation constants, {@code false} otherwise.
+     */
+    private static boolean isValidOrientationExtra(Object extra) {
+        if (!(extra instanceof Integer)) {
+            return false;
+        }
+        Integer preference = (Integer) extra;
+        return (preference == NativeAdOptions.ORIENTATION_ANY ||
+                preference == NativeAdOptions.ORIENTATION_LANDSCAPE ||
+                preference == NativeAdOptions.ORIENTATION_PORTRAIT);
+    }
+
+    /**
+     * Checks whether or not the provided extra value can be mapped to NativeAdOptions'
+     * AdChoices icon placement constants.
+     *
+     * @param extra to be checked if it is valid.
+     * @return {@code true} if the extra can be mapped to one of {@link NativeAdOptions}
+     * AdChoices icon placement constants, {@code false} otherwise.
+     */
+    private static boolean isValidAdChoicesPlacementExtra(Object extra) {
+        if (!(extra instanceof Integer)) {
+            return false;
+        }
+        Integer placement = (Integer) extra;
+        return (placement == NativeAdOptions.ADCHOICES_TOP_LEFT ||
+                placement == NativeAdOptions.ADCHOICES_TOP_RIGHT ||
+                placement == NativeAdOptions.ADCHOICES_BOTTOM_LEFT ||
+                placement == NativeAdOptions.ADCHOICES_BOTTOM_RIGHT);
+    }
+}
@@ -4,8 +4,6 @@ import android.os.Bundle;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
-import android.widget.FrameLayout;
-import android.widget.ImageView;
 import android.widget.TextView;
 
 import androidx.annotation.NonNull;
@@ -15,12 +13,15 @@ import androidx.recyclerview.widget.DividerItemDecoration;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
-import com.google.android.gms.ads.formats.UnifiedNativeAdView;
+import com.mopub.nativeads.GooglePlayServicesAdRenderer;
 import com.mopub.nativeads.NativeAd;
 import com.transo.admob.test.R;
 import com.transo.admob.test.base.BaseApplication;
-import com.transo.admob.test.callback.NativeAdsCallback;
-import com.transo.admob.test.libs.NativeAdsManager;
+import com.transo.admob.test.libs.AdPlacementAdapter;
+import com.transo.admob.test.libs.AdPositioning;
+import com.transo.admob.test.libs.FeedAdPlacer;
+import com.transo.admob.test.libs.NativeAdRegistry;
+import com.transo.admob.test.libs.StartupTrace;
 
 import java.util.Locale;
 
@@ -32,8 +33,8 @@ public class MainActivity extends AppCompatActivity {
     @BindView(R.id.recyclerView)
     RecyclerView mRecyclerView;
     private Adapter mAdapter;
-
-    private NativeAd mNativeAd;
+    private FeedAdPlacer mAdPlacer;
+    private NativeAdRegistry mAdRegistry;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -44,39 +45,16 @@ public class MainActivity extends AppCompatActivity {
         setUpViews();
     }
 
-    private void setUpMoPubAdTryout() {
-        NativeAdsManager
-                .setUpMoPubAdTryout(this, BaseApplication.MOPUB_AD_UNIT_ID,
-                        R.layout.item_ad, new NativeAdsCallback() {
-
-                            @Override
-                            public void onNative(NativeAd nativeAd) {
-                                if (isFinishing()) {
-                                    return;
-                                }
-                                mNativeAd = nativeAd;
-                                mNativeAd.setMoPubNativeEventListener(new NativeAd.MoPubNativeEventListener() {
-                                    @Override
-                                    public void onImpression(View view) {
-
-                                    }
-
-                                    @Override
-                                    public void onClick(View view) {
-                                        setUpMoPubAdTryout();
-                                    }
-                                });
-                                if (mAdapter != null) {
-                                    mAdapter.notifyDataSetChanged();
-                                }
-                            }
-
-
-                            @Override
-                            public void onFail() {
-
-                            }
-                        });
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        if (mAdPlacer != null) {
+            mAdPlacer.destroy();
+        }
+        if (mAdRegistry != null) {
+            mAdRegistry.destroy();
+        }
+        GooglePlayServicesAdRenderer.releaseAdViews(this);
     }
 
     private void setUpViews() {
@@ -88,12 +66,20 @@ public class MainActivity extends AppCompatActivity {
         mRecyclerView.addItemDecoration(new DividerItemDecoration(this, DividerItemDecoration.VERTICAL));
         mRecyclerView.setAdapter(mAdapter);
 
-        setUpMoPubAdTryout();
+        // An ad at the top, then one every ten items.
+        AdPositioning positioning =
+                new AdPositioning.Builder().addFixedPosition(0).enableRepeatingPositions(10)
+                        .build();
+        // Ads of this screen share their MoPubNative and renderers until it is destroyed.
+        mAdRegistry = new NativeAdRegistry(this);
+        mAdPlacer = new FeedAdPlacer(this, BaseApplication.MOPUB_AD_UNIT_ID, R.layout.item_ad,
+                mAdapter, positioning, mAdRegistry);
+        mAdPlacer.attach(mRecyclerView);
     }
 
-    class Adapter extends RecyclerView.Adapter<RecyclerView.ViewHolder> {
+    class Adapter extends AdPlacementAdapter {
 
-        private final int VIEW_TYPE = 1, VIEW_TYPE_AD = 2;
+        private final int VIEW_TYPE = 1;
 
         class ViewHolder extends RecyclerView.ViewHolder {
 
@@ -107,65 +93,36 @@ public class MainActivity extends AppCompatActivity {
 
         }
 
-        class AdViewHolder extends RecyclerView.ViewHolder {
-
-            @BindView(R.id.unifiedNativeAdView)
-            UnifiedNativeAdView adView;
-
-            @BindView(R.id.imageView_icon)
-            ImageView iconImageView;
-            @BindView(R.id.textView_cta)
-            TextView ctaTextView;
-            @BindView(R.id.textView_title)
-            TextView titleTextView;
-
-            @BindView(R.id.view_privacy)
-            FrameLayout privacyView;
-
-            private AdViewHolder(View view) {
-                super(view);
-                ButterKnife.bind(this, view);
-            }
+        @Override
+        public int getContentItemCount() {
+            return 100;
         }
 
         @Override
-        public int getItemViewType(int position) {
-            return mNativeAd != null && position == 0 ? VIEW_TYPE_AD : VIEW_TYPE;
+        public int getContentItemViewType(int contentPosition) {
+            return VIEW_TYPE;
         }
 
-
         @NonNull
         @Override
-        public RecyclerView.ViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
-            View view;
-            if (viewType == VIEW_TYPE) {
-                view = LayoutInflater.from(parent.getContext())
-                        .inflate(R.layout.item_test, parent, false);
-                return new ViewHolder(view);
-            } else {
-                view = mNativeAd.createAdView(parent.getContext(), parent);
-                return new AdViewHolder(view);
-            }
+        public RecyclerView.ViewHolder onCreateContentViewHolder(@NonNull ViewGroup parent,
+                                                                int viewType) {
+            View view = LayoutInflater.from(parent.getContext())
+                    .inflate(R.layout.item_test, parent, false);
+            return new ViewHolder(view);
         }
 
         @Override
-        public void onBindViewHolder(@NonNull RecyclerView.ViewHolder holder, int position) {
-            int viewType = getItemViewType(position);
-
+        public void onBindContentViewHolder(@NonNull RecyclerView.ViewHolder holder,
+                                            int contentPosition) {
+            ViewHolder viewHolder = (ViewHolder) holder;
 
-            if (viewType == VIEW_TYPE) {
-                ViewHolder viewHolder = (ViewHolder) holder;
-
-                viewHolder.textView.setText(String.format(Locale.getDefault(), "Test %d", position - (mNativeAd != null ? 1 : 0)));
-            } else {
-                mNativeAd.renderAdView(holder.itemView);
-                mNativeAd.prepare(holder.itemView);
-            }
+            viewHolder.textView.setText(String.format(Locale.getDefault(), "Test %d", contentPosition));
         }
 
         @Override
-        public int getItemCount() {
-            return 100 + (mNativeAd != null ? 1 : 0);
+        protected void onAdBound(@NonNull NativeAd nativeAd, int contentPosition) {
+            StartupTrace.mark(StartupTrace.Milestone.FIRST_RENDER);
         }
     }
 
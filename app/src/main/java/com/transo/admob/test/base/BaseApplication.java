@@ -5,10 +5,12 @@ import android.content.Context;
 import androidx.multidex.MultiDex;
 import androidx.multidex.MultiDexApplication;
 
-import com.google.android.gms.ads.MobileAds;
 import com.mopub.common.MoPub;
 import com.mopub.common.SdkConfiguration;
+import com.mopub.mobileads.GooglePlayServicesInitializer;
 import com.transo.admob.test.R;
+import com.transo.admob.test.libs.SdkReadyGate;
+import com.transo.admob.test.libs.StartupTrace;
 
 public class BaseApplication extends MultiDexApplication {
 
@@ -17,14 +19,29 @@ public class BaseApplication extends MultiDexApplication {
     @Override
     protected void attachBaseContext(Context base) {
         super.attachBaseContext(base);
+        StartupTrace.mark(StartupTrace.Milestone.APP_START);
+        StartupTrace.beginSection("MultiDex.install");
         MultiDex.install(this);
+        StartupTrace.endSection();
+        StartupTrace.mark(StartupTrace.Milestone.MULTIDEX_INSTALLED);
     }
 
     @Override
     public void onCreate() {
         super.onCreate();
+        StartupTrace.mark(StartupTrace.Milestone.MOPUB_INIT_START);
+        StartupTrace.beginSection("MoPub.initializeSdk");
         MoPub.initializeSdk(this,
-                new SdkConfiguration.Builder(MOPUB_AD_UNIT_ID).build(), null);
-        MobileAds.initialize(this, getString(R.string.admob_app_id));
+                new SdkConfiguration.Builder(MOPUB_AD_UNIT_ID).build(),
+                SdkReadyGate.getInitializationListener());
+        StartupTrace.endSection();
+
+        StartupTrace.mark(StartupTrace.Milestone.MOBILE_ADS_INIT_START);
+        GooglePlayServicesInitializer.initialize(this, getString(R.string.admob_app_id),
+                success -> {
+                    if (success) {
+                        StartupTrace.mark(StartupTrace.Milestone.MOBILE_ADS_INIT_FINISH);
+                    }
+                });
     }
 }
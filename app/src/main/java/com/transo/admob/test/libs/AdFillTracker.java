@@ -0,0 +1,220 @@
+package com.transo.admob.test.libs;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+
+import com.mopub.nativeads.NativeErrorCode;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Remembers how well each ad unit fills and backs off from units that currently don't. After a
+ * no-fill, requests are held back for an exponentially growing, jittered delay, shortened for
+ * units seen to usually fill; a fill resets it. The state is kept in {@link SharedPreferences}, so
+ * a restart doesn't hammer an unfilled unit again.
+ * <p>
+ * All methods must be called on the main thread.
+ */
+public class AdFillTracker {
+
+    /**
+     * Delay after the first no-fill of a unit that never fills, doubled by each following one.
+     */
+    public static final long BASE_BACKOFF_MILLIS = TimeUnit.SECONDS.toMillis(5);
+    public static final long MAX_BACKOFF_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+    /**
+     * Delays are randomly stretched or shrunk by up to this share, so that several units, or
+     * several devices, don't retry in lockstep.
+     */
+    private static final float JITTER = 0.2f;
+
+    /**
+     * Weight of the latest outcome in the fill rate.
+     */
+    private static final float SMOOTHING = 0.2f;
+
+    /**
+     * Share of the delay kept however well a unit usually fills.
+     */
+    private static final float MIN_BACKOFF_FACTOR = 0.25f;
+
+    /**
+     * Number of outcomes of a unit needed before its fill rate shortens the delay, so that the
+     * untested rate of a new unit doesn't.
+     */
+    @VisibleForTesting
+    static final int MIN_FILL_RATE_SAMPLES = 5;
+
+    private static final String PREFERENCES_NAME = "ad_fill_tracker";
+    private static final String KEY_NO_FILLS = ".noFills";
+    private static final String KEY_FILL_RATE = ".fillRate";
+    private static final String KEY_SAMPLES = ".samples";
+    private static final String KEY_RETRY_AT = ".retryAt";
+
+    @Nullable
+    private static AdFillTracker sInstance;
+
+    @Nullable
+    private final SharedPreferences mPreferences;
+    @NonNull
+    private final Random mRandom;
+    private final Map<String, UnitState> mStates = new HashMap<>();
+
+    @VisibleForTesting
+    AdFillTracker(@Nullable SharedPreferences preferences, @NonNull Random random) {
+        mPreferences = preferences;
+        mRandom = random;
+    }
+
+    @MainThread
+    @NonNull
+    public static AdFillTracker getInstance(@NonNull Context context) {
+        if (sInstance == null) {
+            sInstance = new AdFillTracker(context.getApplicationContext()
+                    .getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE), new Random());
+        }
+        return sInstance;
+    }
+
+    /**
+     * @return whether MoPub reports the error code when no network had an ad to serve.
+     */
+    public static boolean isNoFill(@Nullable NativeErrorCode errorCode) {
+        return errorCode == NativeErrorCode.NETWORK_NO_FILL ||
+                errorCode == NativeErrorCode.EMPTY_AD_RESPONSE;
+    }
+
+    /**
+     * @return {@code false} while the unit is backed off after a no-fill.
+     */
+    @MainThread
+    public boolean isWorthRequesting(@NonNull String unitId) {
+        return isWorthRequesting(unitId, System.currentTimeMillis());
+    }
+
+    @VisibleForTesting
+    boolean isWorthRequesting(@NonNull String unitId, long nowMillis) {
+        return getRetryDelayMillis(unitId, nowMillis) == 0;
+    }
+
+    /**
+     * @return the time left before the unit is worth requesting again, {@code 0} if it is.
+     */
+    @MainThread
+    public long getRetryDelayMillis(@NonNull String unitId) {
+        return getRetryDelayMillis(unitId, System.currentTimeMillis());
+    }
+
+    @VisibleForTesting
+    long getRetryDelayMillis(@NonNull String unitId, long nowMillis) {
+        // Bounded, in case the wall clock was set back since the no-fill.
+        long maxDelayMillis = (long) (MAX_BACKOFF_MILLIS * (1 + JITTER));
+        return Math.max(0, Math.min(maxDelayMillis, getState(unitId).retryAtMillis - nowMillis));
+    }
+
+    /**
+     * @return the smoothed share of requests of the unit that filled, {@code 1} before any. It
+     * only shortens the backoff after {@link #MIN_FILL_RATE_SAMPLES} outcomes.
+     */
+    @MainThread
+    public float getFillRate(@NonNull String unitId) {
+        return getState(unitId).fillRate;
+    }
+
+    @MainThread
+    public void recordFill(@NonNull String unitId) {
+        UnitState state = getState(unitId);
+        state.fillRate += SMOOTHING * (1 - state.fillRate);
+        state.addSample();
+        state.noFills = 0;
+        state.retryAtMillis = 0;
+        save(unitId, state);
+    }
+
+    @MainThread
+    public void recordNoFill(@NonNull String unitId) {
+        recordNoFill(unitId, System.currentTimeMillis());
+    }
+
+    @VisibleForTesting
+    void recordNoFill(@NonNull String unitId, long nowMillis) {
+        UnitState state = getState(unitId);
+        state.fillRate -= SMOOTHING * state.fillRate;
+        state.addSample();
+        state.noFills++;
+        // Until enough outcomes are seen, the unit is backed off from like one that never fills.
+        float fillRate = state.samples >= MIN_FILL_RATE_SAMPLES ? state.fillRate : 0;
+        state.retryAtMillis = nowMillis + computeBackoffMillis(state.noFills, fillRate,
+                1 + JITTER * (2 * mRandom.nextFloat() - 1));
+        save(unitId, state);
+    }
+
+    /**
+     * @return the delay after the given number of consecutive no-fills, scaled down for units
+     * that usually fill and multiplied by the jitter factor.
+     */
+    @VisibleForTesting
+    static long computeBackoffMillis(int noFills, float fillRate, float jitterFactor) {
+        long delayMillis = BASE_BACKOFF_MILLIS << Math.min(noFills - 1, 30);
+        float factor = Math.max(MIN_BACKOFF_FACTOR, 1 - fillRate);
+        return (long) (Math.min(MAX_BACKOFF_MILLIS, delayMillis * factor) * jitterFactor);
+    }
+
+    @NonNull
+    private UnitState getState(@NonNull String unitId) {
+        UnitState state = mStates.get(unitId);
+        if (state == null) {
+            state = new UnitState();
+            if (mPreferences != null) {
+                state.noFills = mPreferences.getInt(unitId + KEY_NO_FILLS, 0);
+                state.fillRate = mPreferences.getFloat(unitId + KEY_FILL_RATE, 1);
+                state.samples = mPreferences.getInt(unitId + KEY_SAMPLES, 0);
+                state.retryAtMillis = mPreferences.getLong(unitId + KEY_RETRY_AT, 0);
+            }
+            mStates.put(unitId, state);
+        }
+        return state;
+    }
+
+    private void save(@NonNull String unitId, @NonNull UnitState state) {
+        if (mPreferences == null) {
+            return;
+        }
+        mPreferences.edit()
+                .putInt(unitId + KEY_NO_FILLS, state.noFills)
+                .putFloat(unitId + KEY_FILL_RATE, state.fillRate)
+                .putInt(unitId + KEY_SAMPLES, state.samples)
+                .putLong(unitId + KEY_RETRY_AT, state.retryAtMillis)
+                .apply();
+    }
+
+    private static class UnitState {
+
+        int noFills;
+        float fillRate = 1;
+
+        /**
+         * Number of outcomes the fill rate is based on, counted up to what it takes to trust it.
+         */
+        int samples;
+
+        /**
+         * Wall clock time before which the unit isn't requested, so that it holds across
+         * restarts.
+         */
+        long retryAtMillis;
+
+        void addSample() {
+            samples = Math.min(samples + 1, MIN_FILL_RATE_SAMPLES);
+        }
+    }
+}
@@ -0,0 +1,286 @@
+package com.transo.admob.test.libs;
+
+import android.util.SparseArray;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.FrameLayout;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.mopub.nativeads.NativeAd;
+
+/**
+ * RecyclerView adapter that places native ads between content items. Subclasses only deal with
+ * content positions; an index maps adapter positions to content items or ads in O(1), and ads
+ * arriving, being replaced or expiring are reported as single item changes instead of a full
+ * {@link #notifyDataSetChanged()}.
+ */
+public abstract class AdPlacementAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder> {
+
+    /**
+     * View type of ad rows, content view types must differ from it.
+     */
+    public static final int VIEW_TYPE_AD = Integer.MIN_VALUE;
+
+    /**
+     * Ads by the content position they are shown before.
+     */
+    private final SparseArray<NativeAd> mAds = new SparseArray<>();
+
+    /**
+     * For each adapter position, the content position, or {@code -1 - contentPosition} for the
+     * ad shown before that content position.
+     */
+    private int[] mAdapterIndex = new int[0];
+
+    /**
+     * For each content position, its adapter position.
+     */
+    private int[] mContentIndex = new int[0];
+    private boolean mIndexStale = true;
+
+    public abstract int getContentItemCount();
+
+    public int getContentItemViewType(int contentPosition) {
+        return 0;
+    }
+
+    @NonNull
+    public abstract RecyclerView.ViewHolder onCreateContentViewHolder(@NonNull ViewGroup parent,
+                                                                     int viewType);
+
+    public abstract void onBindContentViewHolder(@NonNull RecyclerView.ViewHolder holder,
+                                                 int contentPosition);
+
+    /**
+     * Shows an ad before the given content position, or after the last item if it equals the
+     * content item count. An ad already there is replaced.
+     *
+     * @return the replaced ad, which the caller destroys once it is no longer needed.
+     */
+    @Nullable
+    public NativeAd setAd(int contentPosition, @NonNull NativeAd nativeAd) {
+        NativeAd previousAd = mAds.get(contentPosition);
+        if (previousAd != null) {
+            mAds.put(contentPosition, nativeAd);
+            int adapterPosition = getAdAdapterPosition(contentPosition);
+            if (adapterPosition != RecyclerView.NO_POSITION) {
+                notifyItemChanged(adapterPosition);
+            }
+            return previousAd;
+        }
+        mAds.put(contentPosition, nativeAd);
+        rebuildIndex();
+        int adapterPosition = getAdAdapterPosition(contentPosition);
+        if (adapterPosition != RecyclerView.NO_POSITION) {
+            notifyItemInserted(adapterPosition);
+        }
+        return null;
+    }
+
+    /**
+     * Removes the ad shown before the given content position, if any.
+     *
+     * @return the removed ad, which the caller destroys once it is no longer needed.
+     */
+    @Nullable
+    public NativeAd removeAd(int contentPosition) {
+        NativeAd nativeAd = mAds.get(contentPosition);
+        if (nativeAd == null) {
+            return null;
+        }
+        int adapterPosition = getAdAdapterPosition(contentPosition);
+        mAds.remove(contentPosition);
+        rebuildIndex();
+        if (adapterPosition != RecyclerView.NO_POSITION) {
+            notifyItemRemoved(adapterPosition);
+        }
+        return nativeAd;
+    }
+
+    @Nullable
+    public NativeAd getAd(int contentPosition) {
+        return mAds.get(contentPosition);
+    }
+
+    /**
+     * @return the number of ads placed, including ones beyond the current content.
+     */
+    public int getAdCount() {
+        return mAds.size();
+    }
+
+    /**
+     * @return the content position of the {@code index}-th ad, in ascending order.
+     */
+    public int getAdContentPositionAt(int index) {
+        return mAds.keyAt(index);
+    }
+
+    /**
+     * Must be called instead of {@link #notifyDataSetChanged()} when the content changes.
+     */
+    public void notifyContentChanged() {
+        rebuildIndex();
+        notifyDataSetChanged();
+    }
+
+    /**
+     * @return the content position at the given adapter position, or
+     * {@link RecyclerView#NO_POSITION} if an ad is shown there.
+     */
+    public int getContentPosition(int adapterPosition) {
+        ensureIndex();
+        int entry = mAdapterIndex[adapterPosition];
+        return entry >= 0 ? entry : RecyclerView.NO_POSITION;
+    }
+
+    /**
+     * @return the adapter position of the given content position.
+     */
+    public int getAdapterPosition(int contentPosition) {
+        ensureIndex();
+        return mContentIndex[contentPosition];
+    }
+
+    /**
+     * @return the adapter position of the ad shown before the given content position, or
+     * {@link RecyclerView#NO_POSITION} if there is no such ad.
+     */
+    public int getAdAdapterPosition(int contentPosition) {
+        ensureIndex();
+        if (mAds.get(contentPosition) == null || contentPosition > mContentIndex.length) {
+            return RecyclerView.NO_POSITION;
+        }
+        return contentPosition == mContentIndex.length ? mAdapterIndex.length - 1 :
+                mContentIndex[contentPosition] - 1;
+    }
+
+    @Override
+    public final int getItemCount() {
+        ensureIndex();
+        return mAdapterIndex.length;
+    }
+
+    @Override
+    public final int getItemViewType(int position) {
+        ensureIndex();
+        int entry = mAdapterIndex[position];
+        return entry >= 0 ? getContentItemViewType(entry) : VIEW_TYPE_AD;
+    }
+
+    @NonNull
+    @Override
+    public final RecyclerView.ViewHolder onCreateViewHolder(@NonNull ViewGroup parent,
+                                                           int viewType) {
+        if (viewType != VIEW_TYPE_AD) {
+            return onCreateContentViewHolder(parent, viewType);
+        }
+        // All ads placed by one adapter share the same renderers, so any placed ad can create
+        // the view. Without one, the view is created on bind, inside a container.
+        if (mAds.size() > 0) {
+            return new AdViewHolder(mAds.valueAt(0).createAdView(parent.getContext(), parent),
+                    false);
+        }
+        return new AdViewHolder(new FrameLayout(parent.getContext()), true);
+    }
+
+    @Override
+    public final void onBindViewHolder(@NonNull RecyclerView.ViewHolder holder, int position) {
+        ensureIndex();
+        int entry = mAdapterIndex[position];
+        if (entry >= 0) {
+            onBindContentViewHolder(holder, entry);
+            return;
+        }
+        NativeAd nativeAd = mAds.get(-1 - entry);
+        AdViewHolder adViewHolder = (AdViewHolder) holder;
+        View adView = adViewHolder.getAdView(nativeAd);
+        if (adViewHolder.mBoundAd != null && adViewHolder.mBoundAd != nativeAd) {
+            // Stops tracking the previous ad on this view before it shows the new one.
+            adViewHolder.mBoundAd.clear(adView);
+        }
+        adViewHolder.mBoundAd = nativeAd;
+        nativeAd.renderAdView(adView);
+        nativeAd.prepare(adView);
+        onAdBound(nativeAd, -1 - entry);
+    }
+
+    @Override
+    public void onViewRecycled(@NonNull RecyclerView.ViewHolder holder) {
+        if (holder instanceof AdViewHolder) {
+            AdViewHolder adViewHolder = (AdViewHolder) holder;
+            if (adViewHolder.mBoundAd != null && adViewHolder.mAdView != null) {
+                adViewHolder.mBoundAd.clear(adViewHolder.mAdView);
+                adViewHolder.mBoundAd = null;
+            }
+        }
+    }
+
+    /**
+     * Called after an ad has been rendered into its row.
+     */
+    protected void onAdBound(@NonNull NativeAd nativeAd, int contentPosition) {
+    }
+
+    private void ensureIndex() {
+        if (mIndexStale) {
+            rebuildIndex();
+        }
+    }
+
+    private void rebuildIndex() {
+        int contentCount = getContentItemCount();
+        int adCount = 0;
+        for (int i = 0; i < mAds.size() && mAds.keyAt(i) <= contentCount; i++) {
+            adCount++;
+        }
+
+        int[] adapterIndex = new int[contentCount + adCount];
+        int[] contentIndex = new int[contentCount];
+        int adapterPosition = 0;
+        int adIndex = 0;
+        for (int contentPosition = 0; contentPosition <= contentCount; contentPosition++) {
+            if (adIndex < adCount && mAds.keyAt(adIndex) == contentPosition) {
+                adapterIndex[adapterPosition++] = -1 - contentPosition;
+                adIndex++;
+            }
+            if (contentPosition < contentCount) {
+                contentIndex[contentPosition] = adapterPosition;
+                adapterIndex[adapterPosition++] = contentPosition;
+            }
+        }
+        mAdapterIndex = adapterIndex;
+        mContentIndex = contentIndex;
+        mIndexStale = false;
+    }
+
+    private static class AdViewHolder extends RecyclerView.ViewHolder {
+
+        /**
+         * The view ads are rendered into: the item view, or the only child of the item view
+         * when it is a container created before any ad could create the view.
+         */
+        @Nullable
+        View mAdView;
+        @Nullable
+        NativeAd mBoundAd;
+
+        AdViewHolder(@NonNull View view, boolean container) {
+            super(view);
+            mAdView = container ? null : view;
+        }
+
+        @NonNull
+        View getAdView(@NonNull NativeAd nativeAd) {
+            if (mAdView == null) {
+                ViewGroup container = (ViewGroup) itemView;
+                mAdView = nativeAd.createAdView(container.getContext(), container);
+                container.addView(mAdView);
+            }
+            return mAdView;
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.transo.admob.test.libs;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.RecyclerView;
+
+import java.util.Arrays;
+import java.util.TreeSet;
+
+/**
+ * Where ads go in a feed, as content positions an ad is shown before: any number of fixed
+ * positions, optionally followed by an ad every {@code interval} content items after the last
+ * fixed one (or from the start if there is none).
+ */
+public final class AdPositioning {
+
+    @NonNull
+    private final int[] mFixedPositions;
+    private final int mRepeatInterval;
+
+    private AdPositioning(@NonNull int[] fixedPositions, int repeatInterval) {
+        mFixedPositions = fixedPositions;
+        mRepeatInterval = repeatInterval;
+    }
+
+    /**
+     * @return the first slot at or after {@code contentPosition}, or
+     * {@link RecyclerView#NO_POSITION} if there is none.
+     */
+    public int nextSlot(int contentPosition) {
+        int index = Arrays.binarySearch(mFixedPositions, contentPosition);
+        if (index < 0) {
+            index = -1 - index;
+        }
+        if (index < mFixedPositions.length) {
+            return mFixedPositions[index];
+        }
+        if (mRepeatInterval <= 0) {
+            return RecyclerView.NO_POSITION;
+        }
+        int base = mFixedPositions.length > 0 ? mFixedPositions[mFixedPositions.length - 1] : 0;
+        int steps = Math.max(1, (contentPosition - base + mRepeatInterval - 1) / mRepeatInterval);
+        return base + steps * mRepeatInterval;
+    }
+
+    public static class Builder {
+
+        private final TreeSet<Integer> mFixedPositions = new TreeSet<>();
+        private int mRepeatInterval;
+
+        /**
+         * Shows an ad before the given content position.
+         */
+        @NonNull
+        public Builder addFixedPosition(int contentPosition) {
+            if (contentPosition >= 0) {
+                mFixedPositions.add(contentPosition);
+            }
+            return this;
+        }
+
+        /**
+         * Shows an ad every {@code interval} content items after the last fixed position.
+         */
+        @NonNull
+        public Builder enableRepeatingPositions(int interval) {
+            mRepeatInterval = Math.max(1, interval);
+            return this;
+        }
+
+        @NonNull
+        public AdPositioning build() {
+            int[] fixedPositions = new int[mFixedPositions.size()];
+            int i = 0;
+            for (int position : mFixedPositions) {
+                fixedPositions[i++] = position;
+            }
+            return new AdPositioning(fixedPositions, mRepeatInterval);
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.transo.admob.test.libs;
+
+import android.os.SystemClock;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+
+/**
+ * Drives a {@link FeedAdPlacer} from the scroll position and velocity of a {@link RecyclerView}.
+ * While scrolling, slots are filled as far ahead as the list travels during one estimated fill
+ * latency, so ads are loaded by the time their slot comes into view; once scrolling stops, only
+ * the visible slots are filled.
+ */
+class AdPrefetchScheduler extends RecyclerView.OnScrollListener {
+
+    /**
+     * Fill latency assumed until the first ad has been loaded.
+     */
+    private static final long DEFAULT_FILL_LATENCY_MILLIS = 1500;
+
+    /**
+     * Weight of a new sample in the moving averages of latency and velocity.
+     */
+    private static final float SMOOTHING = 0.25f;
+
+    /**
+     * Content items filled behind the window and, at least, ahead of it while scrolling.
+     */
+    private static final int MIN_LOOKAHEAD = 2;
+    private static final int MAX_LOOKAHEAD = 40;
+
+    @NonNull
+    private final FeedAdPlacer mPlacer;
+    @NonNull
+    private final RecyclerView mRecyclerView;
+
+    private float mFillLatencyMillis = DEFAULT_FILL_LATENCY_MILLIS;
+
+    /**
+     * Smoothed scroll velocity in pixels per millisecond, positive downwards.
+     */
+    private float mVelocity;
+    private long mLastScrollMillis;
+    private boolean mStarted;
+
+    AdPrefetchScheduler(@NonNull FeedAdPlacer placer, @NonNull RecyclerView recyclerView) {
+        mPlacer = placer;
+        mRecyclerView = recyclerView;
+    }
+
+    void start() {
+        mStarted = true;
+        mRecyclerView.addOnScrollListener(this);
+        // Nothing is laid out yet, so the first window is read once layout has happened.
+        mRecyclerView.post(() -> {
+            if (mStarted) {
+                backOff();
+            }
+        });
+    }
+
+    void stop() {
+        mStarted = false;
+        mRecyclerView.removeOnScrollListener(this);
+    }
+
+    void recordFillLatency(long latencyMillis) {
+        mFillLatencyMillis += SMOOTHING * (latencyMillis - mFillLatencyMillis);
+    }
+
+    @Override
+    public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+        long now = SystemClock.uptimeMillis();
+        long elapsedMillis = now - mLastScrollMillis;
+        mLastScrollMillis = now;
+        if (elapsedMillis > 0 && elapsedMillis < 1000) {
+            mVelocity += SMOOTHING * ((float) dy / elapsedMillis - mVelocity);
+        }
+        update(recyclerView.getScrollState() == RecyclerView.SCROLL_STATE_IDLE);
+    }
+
+    @Override
+    public void onScrollStateChanged(@NonNull RecyclerView recyclerView, int newState) {
+        if (newState == RecyclerView.SCROLL_STATE_IDLE) {
+            backOff();
+        }
+    }
+
+    private void backOff() {
+        mVelocity = 0;
+        mLastScrollMillis = 0;
+        update(true);
+    }
+
+    private void update(boolean idle) {
+        RecyclerView.LayoutManager layoutManager = mRecyclerView.getLayoutManager();
+        if (!(layoutManager instanceof LinearLayoutManager) ||
+                mRecyclerView.getAdapter() == null ||
+                mRecyclerView.getAdapter().getItemCount() == 0) {
+            return;
+        }
+        LinearLayoutManager linearLayoutManager = (LinearLayoutManager) layoutManager;
+        int first = linearLayoutManager.findFirstVisibleItemPosition();
+        int last = linearLayoutManager.findLastVisibleItemPosition();
+        if (first == RecyclerView.NO_POSITION || last == RecyclerView.NO_POSITION) {
+            return;
+        }
+        int firstContent = mPlacer.toContentPosition(first);
+        int lastContent = mPlacer.toContentPosition(last);
+
+        if (idle) {
+            mPlacer.setPrefetchWindow(0, 0);
+        } else {
+            // Items travelled during one fill latency, from the average visible item height.
+            int height = mRecyclerView.getHeight();
+            float itemsPerPixel = height > 0 ? (float) (last - first + 1) / height : 0;
+            int lookahead = (int) Math.ceil(
+                    Math.abs(mVelocity) * mFillLatencyMillis * itemsPerPixel);
+            lookahead = Math.max(MIN_LOOKAHEAD, Math.min(MAX_LOOKAHEAD, lookahead));
+            if (mVelocity >= 0) {
+                mPlacer.setPrefetchWindow(MIN_LOOKAHEAD, lookahead);
+            } else {
+                mPlacer.setPrefetchWindow(lookahead, MIN_LOOKAHEAD);
+            }
+        }
+        mPlacer.onVisibleRangeChanged(firstContent, lastContent);
+    }
+}
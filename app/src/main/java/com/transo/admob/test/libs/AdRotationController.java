@@ -0,0 +1,105 @@
+package com.transo.admob.test.libs;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+
+import com.mopub.nativeads.NativeAd;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Decides when a placed ad is due for a replacement: once its impression has been confirmed
+ * and it has stayed on screen for a minimum dwell time. Ads are never rotated before they have
+ * been seen, so no impression is lost to a refresh.
+ * <p>
+ * All methods must be called on the main thread.
+ */
+public class AdRotationController {
+
+    public static final long DEFAULT_MIN_DWELL_MILLIS = 30000;
+
+    /**
+     * Notified when an ad is due for rotation.
+     */
+    public interface Listener {
+        void onRotationDue(@NonNull NativeAd nativeAd);
+    }
+
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private final Map<NativeAd, Runnable> mPendingRotations = new IdentityHashMap<>();
+
+    @NonNull
+    private final Listener mListener;
+    private long mMinDwellMillis = DEFAULT_MIN_DWELL_MILLIS;
+
+    public AdRotationController(@NonNull Listener listener) {
+        mListener = listener;
+    }
+
+    /**
+     * @param minDwellMillis time an ad stays after its impression, zero or less to never rotate.
+     */
+    public void setMinDwellMillis(long minDwellMillis) {
+        mMinDwellMillis = minDwellMillis;
+    }
+
+    /**
+     * Starts the dwell time of an ad whose impression has just been confirmed.
+     */
+    @MainThread
+    public void onImpression(@NonNull NativeAd nativeAd) {
+        schedule(nativeAd, mMinDwellMillis);
+    }
+
+    /**
+     * Asks again later for an ad whose rotation could not happen when it was due.
+     */
+    @MainThread
+    public void postpone(@NonNull NativeAd nativeAd, long delayMillis) {
+        schedule(nativeAd, delayMillis);
+    }
+
+    /**
+     * Forgets an ad that left the feed or was destroyed.
+     */
+    @MainThread
+    public void cancel(@NonNull NativeAd nativeAd) {
+        Runnable rotation = mPendingRotations.remove(nativeAd);
+        if (rotation != null) {
+            mHandler.removeCallbacks(rotation);
+        }
+    }
+
+    @MainThread
+    public void cancelAll() {
+        for (Runnable rotation : mPendingRotations.values()) {
+            mHandler.removeCallbacks(rotation);
+        }
+        mPendingRotations.clear();
+    }
+
+    /**
+     * @return the number of ads waiting for their rotation.
+     */
+    @MainThread
+    public int getPendingRotationCount() {
+        return mPendingRotations.size();
+    }
+
+    private void schedule(@NonNull final NativeAd nativeAd, long delayMillis) {
+        if (mMinDwellMillis <= 0 || mPendingRotations.containsKey(nativeAd)) {
+            return;
+        }
+        Runnable rotation = () -> {
+            if (mPendingRotations.remove(nativeAd) != null) {
+                mListener.onRotationDue(nativeAd);
+            }
+        };
+        mPendingRotations.put(nativeAd, rotation);
+        mHandler.postDelayed(rotation, delayMillis);
+    }
+}
@@ -0,0 +1,409 @@
+package com.transo.admob.test.libs;
+
+import android.content.Context;
+import android.os.SystemClock;
+import android.view.View;
+
+import androidx.annotation.LayoutRes;
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.mopub.nativeads.NativeAd;
+import com.transo.admob.test.callback.NativeAdsCallback;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Fills the ad slots of an {@link AdPlacementAdapter} with ads from {@link NativeAdsManager}.
+ * Only slots near the visible window are filled, with a cap on concurrent requests, and ads
+ * that scroll far out of view are taken out of the feed: unseen ones are kept for the next slot
+ * that needs one, impressed ones are destroyed. Once attached to a {@link RecyclerView}, an
+ * {@link AdPrefetchScheduler} stretches the window in the scroll direction. Visible ads are
+ * replaced once their {@link AdRotationController} dwell time has passed.
+ * <p>
+ * All methods must be called on the main thread.
+ */
+@SuppressWarnings("unused")
+public class FeedAdPlacer {
+
+    public static final int DEFAULT_MAX_IN_FLIGHT_REQUESTS = 2;
+
+    /**
+     * Default number of content items beyond the visible window whose slots are filled.
+     */
+    public static final int DEFAULT_PREFETCH_DISTANCE = 5;
+
+    /**
+     * Default distance in content items from the visible window beyond which ads are taken out.
+     */
+    public static final int DEFAULT_RECYCLE_DISTANCE = 30;
+
+    /**
+     * Delay before asking again for a rotation that found all requests in use.
+     */
+    private static final long ROTATION_RETRY_DELAY_MILLIS = 5000;
+
+    @NonNull
+    private final Context mContext;
+    @NonNull
+    private final String mUnitId;
+    @LayoutRes
+    private final int mLayoutId;
+    @NonNull
+    private final AdPlacementAdapter mAdapter;
+    @NonNull
+    private final AdPositioning mPositioning;
+    @Nullable
+    private final NativeAdRegistry mRegistry;
+
+    private int mMaxInFlightRequests = DEFAULT_MAX_IN_FLIGHT_REQUESTS;
+    private int mPrefetchBefore = DEFAULT_PREFETCH_DISTANCE;
+    private int mPrefetchAfter = DEFAULT_PREFETCH_DISTANCE;
+    private int mRecycleDistance = DEFAULT_RECYCLE_DISTANCE;
+
+    /**
+     * Loaded ads that are not in the feed, none of them impressed.
+     */
+    private final ArrayDeque<NativeAd> mSpareAds = new ArrayDeque<>();
+    private final Set<NativeAd> mImpressedAds = new HashSet<>();
+    private final AdRotationController mRotationController =
+            new AdRotationController(this::onRotationDue);
+
+    @Nullable
+    private NativeAd.MoPubNativeEventListener mNativeEventListener;
+    @Nullable
+    private AdPrefetchScheduler mScheduler;
+
+    private int mInFlightRequests;
+    private int mFirstVisible;
+    private int mLastVisible = -1;
+    private boolean mDestroyed;
+
+    public FeedAdPlacer(@NonNull Context context, @NonNull String unitId,
+                        @LayoutRes int layoutId, @NonNull AdPlacementAdapter adapter,
+                        @NonNull AdPositioning positioning) {
+        this(context, unitId, layoutId, adapter, positioning, null);
+    }
+
+    /**
+     * @param registry keeps the {@link com.mopub.nativeads.MoPubNative} and renderers the ads
+     *                 are requested with, {@code null} for the process-wide one.
+     */
+    public FeedAdPlacer(@NonNull Context context, @NonNull String unitId,
+                        @LayoutRes int layoutId, @NonNull AdPlacementAdapter adapter,
+                        @NonNull AdPositioning positioning, @Nullable NativeAdRegistry registry) {
+        mContext = context;
+        mUnitId = unitId;
+        mLayoutId = layoutId;
+        mAdapter = adapter;
+        mPositioning = positioning;
+        mRegistry = registry;
+    }
+
+    public void setMaxInFlightRequests(int maxInFlightRequests) {
+        mMaxInFlightRequests = Math.max(1, maxInFlightRequests);
+    }
+
+    /**
+     * Sets how many content items beyond the visible window have their slots filled, on both
+     * sides. An attached scheduler overrides it while scrolling.
+     */
+    public void setPrefetchDistance(int prefetchDistance) {
+        mPrefetchBefore = mPrefetchAfter = Math.max(0, prefetchDistance);
+    }
+
+    public void setRecycleDistance(int recycleDistance) {
+        mRecycleDistance = Math.max(0, recycleDistance);
+    }
+
+    /**
+     * Sets how many content items above and below the visible window have their slots filled.
+     */
+    void setPrefetchWindow(int before, int after) {
+        mPrefetchBefore = Math.max(0, before);
+        mPrefetchAfter = Math.max(0, after);
+    }
+
+    /**
+     * @param dwellMillis time a visible ad stays after its impression before it is replaced,
+     *                    zero or less to never replace it.
+     */
+    public void setRotationDwellMillis(long dwellMillis) {
+        mRotationController.setMinDwellMillis(dwellMillis);
+    }
+
+    /**
+     * Receives the impressions and clicks of every placed ad.
+     */
+    public void setNativeEventListener(@Nullable NativeAd.MoPubNativeEventListener listener) {
+        mNativeEventListener = listener;
+    }
+
+    /**
+     * Follows the visible window of a {@link RecyclerView} using a {@link LinearLayoutManager}.
+     */
+    @MainThread
+    public void attach(@NonNull RecyclerView recyclerView) {
+        detach();
+        mScheduler = new AdPrefetchScheduler(this, recyclerView);
+        mScheduler.start();
+    }
+
+    @MainThread
+    public void detach() {
+        if (mScheduler != null) {
+            mScheduler.stop();
+            mScheduler = null;
+        }
+    }
+
+    /**
+     * Fills the slots near the given window of content positions and takes out the ads far
+     * from it.
+     */
+    @MainThread
+    public void onVisibleRangeChanged(int firstContentPosition, int lastContentPosition) {
+        if (mDestroyed) {
+            return;
+        }
+        mFirstVisible = firstContentPosition;
+        mLastVisible = lastContentPosition;
+        recycleFarAds();
+        fillSlots();
+    }
+
+    /**
+     * Destroys every ad of the feed and stops placing new ones.
+     */
+    @MainThread
+    public void destroy() {
+        detach();
+        mDestroyed = true;
+        mRotationController.cancelAll();
+        while (mAdapter.getAdCount() > 0) {
+            release(mAdapter.removeAd(mAdapter.getAdContentPositionAt(0)));
+        }
+        for (NativeAd nativeAd : mSpareAds) {
+            release(nativeAd);
+        }
+        mSpareAds.clear();
+        mImpressedAds.clear();
+    }
+
+    /**
+     * @return the content position at the given adapter position, or the one right after the
+     * ad shown there.
+     */
+    int toContentPosition(int adapterPosition) {
+        for (int position = adapterPosition; position < mAdapter.getItemCount(); position++) {
+            int contentPosition = mAdapter.getContentPosition(position);
+            if (contentPosition != RecyclerView.NO_POSITION) {
+                return contentPosition;
+            }
+        }
+        return mAdapter.getContentItemCount();
+    }
+
+    private void recycleFarAds() {
+        // Never take out what is about to be filled again.
+        int recycleDistance =
+                Math.max(mRecycleDistance, Math.max(mPrefetchBefore, mPrefetchAfter) + 1);
+        List<Integer> farSlots = new ArrayList<>();
+        for (int i = 0; i < mAdapter.getAdCount(); i++) {
+            int slot = mAdapter.getAdContentPositionAt(i);
+            if (slot < mFirstVisible - recycleDistance || slot > mLastVisible + recycleDistance) {
+                farSlots.add(slot);
+            }
+        }
+        for (int slot : farSlots) {
+            NativeAd nativeAd = mAdapter.removeAd(slot);
+            if (nativeAd == null) {
+                continue;
+            }
+            if (mImpressedAds.contains(nativeAd)) {
+                release(nativeAd);
+            } else {
+                mSpareAds.add(nativeAd);
+            }
+        }
+        // Spares are only kept to cover what could otherwise be requested.
+        while (mSpareAds.size() > mMaxInFlightRequests) {
+            release(mSpareAds.poll());
+        }
+    }
+
+    private void fillSlots() {
+        int from = Math.max(0, mFirstVisible - mPrefetchBefore);
+        int to = Math.min(mAdapter.getContentItemCount(), mLastVisible + mPrefetchAfter);
+
+        // Slots from the visible window onwards in the scroll direction come first.
+        int emptySlots;
+        if (mPrefetchBefore > mPrefetchAfter) {
+            emptySlots = fillSlots(Math.max(from, mFirstVisible), Math.min(to, mLastVisible)) +
+                    fillSlots(from, mFirstVisible - 1) + fillSlots(mLastVisible + 1, to);
+        } else {
+            emptySlots = fillSlots(Math.max(from, mFirstVisible), to) +
+                    fillSlots(from, Math.min(to, mFirstVisible - 1));
+        }
+
+        // An unfilled unit is asked again by a later scroll, once its backoff has passed.
+        // The count is settled before requesting, as a request may fail before it returns.
+        AdFillTracker fillTracker = AdFillTracker.getInstance(mContext);
+        int requestCount = Math.min(emptySlots, mMaxInFlightRequests) - mInFlightRequests;
+        for (int i = 0; i < requestCount && fillTracker.isWorthRequesting(mUnitId); i++) {
+            requestAd(null);
+        }
+    }
+
+    /**
+     * Places spare ads in the empty slots between the given content positions.
+     *
+     * @return the number of slots still empty.
+     */
+    private int fillSlots(int from, int to) {
+        int emptySlots = 0;
+        for (int slot = mPositioning.nextSlot(from);
+             slot != RecyclerView.NO_POSITION && slot <= to;
+             slot = mPositioning.nextSlot(slot + 1)) {
+            if (mAdapter.getAd(slot) != null) {
+                continue;
+            }
+            NativeAd spareAd = mSpareAds.poll();
+            if (spareAd != null) {
+                mAdapter.setAd(slot, spareAd);
+            } else {
+                emptySlots++;
+            }
+        }
+        return emptySlots;
+    }
+
+    /**
+     * Replaces a visible ad whose dwell time has passed. Ads out of view are only taken out, so
+     * that their slot is filled again once it comes near the window.
+     */
+    private void onRotationDue(@NonNull NativeAd nativeAd) {
+        int slot = findSlot(nativeAd);
+        if (mDestroyed || slot == RecyclerView.NO_POSITION) {
+            return;
+        }
+        if (slot < mFirstVisible || slot > mLastVisible) {
+            release(mAdapter.removeAd(slot));
+            return;
+        }
+        if (mInFlightRequests >= mMaxInFlightRequests) {
+            mRotationController.postpone(nativeAd, ROTATION_RETRY_DELAY_MILLIS);
+            return;
+        }
+        long retryDelayMillis = AdFillTracker.getInstance(mContext).getRetryDelayMillis(mUnitId);
+        if (retryDelayMillis > 0) {
+            // The ad stays until the unit is worth requesting again.
+            mRotationController.postpone(nativeAd, retryDelayMillis);
+            return;
+        }
+        requestAd(nativeAd);
+    }
+
+    /**
+     * @return the slot the given ad is placed in, or {@link RecyclerView#NO_POSITION}.
+     */
+    private int findSlot(@NonNull NativeAd nativeAd) {
+        for (int i = 0; i < mAdapter.getAdCount(); i++) {
+            int slot = mAdapter.getAdContentPositionAt(i);
+            if (mAdapter.getAd(slot) == nativeAd) {
+                return slot;
+            }
+        }
+        return RecyclerView.NO_POSITION;
+    }
+
+    /**
+     * Destroys an ad that has left the feed for good.
+     */
+    private void release(@Nullable NativeAd nativeAd) {
+        if (nativeAd == null) {
+            return;
+        }
+        mImpressedAds.remove(nativeAd);
+        mRotationController.cancel(nativeAd);
+        NativeAdsManager.destroyAd(nativeAd);
+    }
+
+    /**
+     * @param replacedAd the ad the new one replaces in place, or {@code null} to fill any slot.
+     */
+    private void requestAd(@Nullable final NativeAd replacedAd) {
+        mInFlightRequests++;
+        final long requestedAtMillis = SystemClock.elapsedRealtime();
+        NativeAdRegistry registry =
+                mRegistry != null ? mRegistry : NativeAdRegistry.getDefault(mContext);
+        NativeAdsManager.setUpMoPubAdTryout(registry, mUnitId, mLayoutId,
+                new NativeAdsCallback() {
+
+                    @Override
+                    public void onNative(NativeAd nativeAd) {
+                        mInFlightRequests--;
+                        if (mScheduler != null) {
+                            mScheduler.recordFillLatency(
+                                    SystemClock.elapsedRealtime() - requestedAtMillis);
+                        }
+                        if (mDestroyed) {
+                            NativeAdsManager.destroyAd(nativeAd);
+                            return;
+                        }
+                        nativeAd.setMoPubNativeEventListener(new EventListener(nativeAd));
+                        int slot = replacedAd != null ?
+                                findSlot(replacedAd) : RecyclerView.NO_POSITION;
+                        if (slot != RecyclerView.NO_POSITION) {
+                            release(mAdapter.setAd(slot, nativeAd));
+                        } else {
+                            mSpareAds.add(nativeAd);
+                        }
+                        fillSlots();
+                    }
+
+                    @Override
+                    public void onFail() {
+                        // Not retried right away: the next scroll asks again, and a replaced
+                        // ad stays for another dwell time.
+                        mInFlightRequests--;
+                        if (replacedAd != null && !mDestroyed) {
+                            mRotationController.onImpression(replacedAd);
+                        }
+                    }
+                });
+    }
+
+    private class EventListener implements NativeAd.MoPubNativeEventListener {
+
+        @NonNull
+        private final NativeAd mNativeAd;
+
+        EventListener(@NonNull NativeAd nativeAd) {
+            mNativeAd = nativeAd;
+        }
+
+        @Override
+        public void onImpression(View view) {
+            mImpressedAds.add(mNativeAd);
+            mRotationController.onImpression(mNativeAd);
+            if (mNativeEventListener != null) {
+                mNativeEventListener.onImpression(view);
+            }
+        }
+
+        @Override
+        public void onClick(View view) {
+            if (mNativeEventListener != null) {
+                mNativeEventListener.onClick(view);
+            }
+        }
+    }
+}
@@ -0,0 +1,290 @@
+package com.transo.admob.test.libs;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.annotation.LayoutRes;
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.mopub.nativeads.GooglePlayServicesAdRenderer;
+import com.mopub.nativeads.GooglePlayServicesNative;
+import com.mopub.nativeads.MediaViewBinder;
+import com.mopub.nativeads.MoPubNative;
+import com.mopub.nativeads.MoPubStaticNativeAdRenderer;
+import com.mopub.nativeads.NativeAd;
+import com.mopub.nativeads.NativeErrorCode;
+import com.mopub.nativeads.RequestParameters;
+import com.mopub.nativeads.ViewBinder;
+import com.transo.admob.test.R;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps the configured {@link MoPubNative} instances and renderers of each ad unit and layout
+ * alive, so that requests reuse them instead of building new ones, and so that every ad of a
+ * layout is rendered by the same renderer instance, whose view holder lookups then hit on
+ * recycled views.
+ * <p>
+ * A registry belongs to whatever owns its ads, usually an Activity, and must be destroyed with
+ * it. Requests still in flight then fail. All methods must be called on the main thread.
+ */
+public class NativeAdRegistry {
+
+    @Nullable
+    private static NativeAdRegistry sDefault;
+    @Nullable
+    private static Handler sMainHandler;
+
+    @NonNull
+    private final Context mContext;
+    private final Map<String, Registration> mRegistrations = new HashMap<>();
+    private boolean mDestroyed;
+
+    public NativeAdRegistry(@NonNull Context context) {
+        mContext = context.getApplicationContext();
+    }
+
+    /**
+     * @return the registry of requests that no shorter-lived owner is given for, never
+     * destroyed.
+     */
+    @MainThread
+    @NonNull
+    static NativeAdRegistry getDefault(@NonNull Context context) {
+        if (sDefault == null) {
+            sDefault = new NativeAdRegistry(context);
+        }
+        return sDefault;
+    }
+
+    @NonNull
+    Context getContext() {
+        return mContext;
+    }
+
+    @MainThread
+    public boolean isDestroyed() {
+        return mDestroyed;
+    }
+
+    /**
+     * Destroys every {@link MoPubNative} of this registry. Requests in flight fail.
+     */
+    @MainThread
+    public void destroy() {
+        if (mDestroyed) {
+            return;
+        }
+        mDestroyed = true;
+        for (Registration registration : mRegistrations.values()) {
+            registration.destroy();
+        }
+        mRegistrations.clear();
+    }
+
+    /**
+     * @return the registration of the given ad unit and layout, created on first use.
+     */
+    @MainThread
+    @NonNull
+    Registration obtain(@NonNull String unitId, @LayoutRes int layoutId) {
+        String key = unitId + '#' + layoutId;
+        Registration registration = mRegistrations.get(key);
+        if (registration == null) {
+            ViewBinder viewBinder = new ViewBinder.Builder(layoutId).titleId(R.id.textView_title).iconImageId(R.id.imageView_icon)
+                    .callToActionId(R.id.textView_cta)
+                    .privacyInformationIconImageId(R.id.imageView_privacy).build();
+
+            MediaViewBinder mediaViewBinder =
+                    new MediaViewBinder.Builder(layoutId).titleId(R.id.textView_title)
+                            // If you've content TextView
+                            // .textId(R.id.textView_content)
+                            .iconImageId(R.id.imageView_icon)
+                            // If you've MediaLayout
+                            // .mediaLayoutId(R.id.mediaLayout)
+                            .callToActionId(R.id.textView_cta)
+                            .privacyInformationIconImageId(R.id.imageView_privacy)
+                            // Must be FrameLayout
+                            .addExtra(
+                                    GooglePlayServicesAdRenderer.VIEW_BINDER_KEY_AD_CHOICES_ICON_CONTAINER,
+                                    R.id.view_privacy)
+                            // Must set parent view to UnifiedNativeAdView
+                            .addExtra(
+                                    GooglePlayServicesAdRenderer.VIEW_BINDER_KEY_UNIFIED_NATIVE_AD_VIEW,
+                                    R.id.unifiedNativeAdView).build();
+
+            registration = new Registration(mContext, unitId, viewBinder, mediaViewBinder);
+            if (mDestroyed) {
+                registration.destroy();
+            } else {
+                mRegistrations.put(key, registration);
+            }
+        }
+        return registration;
+    }
+
+    /**
+     * The renderers and request settings of one ad unit and pair of binders, with the
+     * {@link MoPubNative} instances not requesting an ad at the moment. Instances are created
+     * on demand, so there are never more than the requests ever in flight at once.
+     */
+    static final class Registration {
+
+        @NonNull
+        private final Context mContext;
+        @NonNull
+        private final String mUnitId;
+        @NonNull
+        private final MoPubStaticNativeAdRenderer mStaticRenderer;
+        @Nullable
+        private final GooglePlayServicesAdRenderer mGoogleRenderer;
+        @Nullable
+        private final Map<String, Object> mLocalExtras;
+        @NonNull
+        private final RequestParameters mRequestParameters;
+
+        private final ArrayDeque<PooledRequest> mIdleRequests = new ArrayDeque<>();
+        private final List<PooledRequest> mBusyRequests = new ArrayList<>();
+        private boolean mDestroyed;
+
+        Registration(@NonNull Context context, @NonNull String unitId,
+                     @NonNull ViewBinder viewBinder, @Nullable MediaViewBinder mediaViewBinder) {
+            mContext = context.getApplicationContext();
+            mUnitId = unitId;
+            mStaticRenderer = new MoPubStaticNativeAdRenderer(viewBinder);
+
+            if (mediaViewBinder != null) {
+                mGoogleRenderer = new GooglePlayServicesAdRenderer(mediaViewBinder);
+
+                // Only download the images the ad layout can display.
+                mLocalExtras = new HashMap<>();
+                mLocalExtras.put(GooglePlayServicesNative.KEY_EXTRA_RENDERABLE_ASSETS,
+                        mGoogleRenderer.getRenderableAssets());
+            } else {
+                mGoogleRenderer = null;
+                mLocalExtras = null;
+            }
+
+            EnumSet<RequestParameters.NativeAdAsset> assetsSet =
+                    EnumSet.of(RequestParameters.NativeAdAsset.TITLE,
+                            RequestParameters.NativeAdAsset.TEXT,
+                            RequestParameters.NativeAdAsset.CALL_TO_ACTION_TEXT,
+                            RequestParameters.NativeAdAsset.ICON_IMAGE,
+                            RequestParameters.NativeAdAsset.MAIN_IMAGE);
+            mRequestParameters = new RequestParameters.Builder().desiredAssets(assetsSet).build();
+        }
+
+        /**
+         * Requests an ad with an idle {@link MoPubNative}, or a new one if all are busy. The
+         * listener is called exactly once, never before this method returns; if this
+         * registration is destroyed, with a failure posted to the main thread.
+         */
+        @MainThread
+        void makeRequest(@NonNull final MoPubNative.MoPubNativeNetworkListener listener) {
+            if (mDestroyed) {
+                if (sMainHandler == null) {
+                    sMainHandler = new Handler(Looper.getMainLooper());
+                }
+                sMainHandler.post(
+                        () -> listener.onNativeFail(NativeErrorCode.NETWORK_INVALID_STATE));
+                return;
+            }
+            PooledRequest request = mIdleRequests.poll();
+            if (request == null) {
+                request = new PooledRequest();
+            }
+            mBusyRequests.add(request);
+            request.start(listener);
+        }
+
+        /**
+         * Destroys every {@link MoPubNative} and fails the requests in flight.
+         */
+        @MainThread
+        void destroy() {
+            if (mDestroyed) {
+                return;
+            }
+            mDestroyed = true;
+            for (PooledRequest request : mIdleRequests) {
+                request.mMoPubNative.destroy();
+            }
+            mIdleRequests.clear();
+            for (PooledRequest request : new ArrayList<>(mBusyRequests)) {
+                request.onNativeFail(NativeErrorCode.NETWORK_INVALID_STATE);
+            }
+        }
+
+        /**
+         * A {@link MoPubNative} making one request at a time, for whichever listener started it.
+         */
+        private final class PooledRequest implements MoPubNative.MoPubNativeNetworkListener {
+
+            @NonNull
+            final MoPubNative mMoPubNative;
+            @Nullable
+            private MoPubNative.MoPubNativeNetworkListener mListener;
+
+            PooledRequest() {
+                mMoPubNative = new MoPubNative(mContext, mUnitId, this);
+                mMoPubNative.registerAdRenderer(mStaticRenderer);
+                if (mGoogleRenderer != null) {
+                    mMoPubNative.registerAdRenderer(mGoogleRenderer);
+                    mMoPubNative.setLocalExtras(mLocalExtras);
+                }
+            }
+
+            void start(@NonNull MoPubNative.MoPubNativeNetworkListener listener) {
+                mListener = listener;
+                mMoPubNative.makeRequest(mRequestParameters);
+            }
+
+            @Override
+            public void onNativeLoad(NativeAd nativeAd) {
+                MoPubNative.MoPubNativeNetworkListener listener = finish();
+                if (listener != null) {
+                    listener.onNativeLoad(nativeAd);
+                } else {
+                    NativeAdsManager.destroyAd(nativeAd);
+                }
+            }
+
+            @Override
+            public void onNativeFail(NativeErrorCode errorCode) {
+                MoPubNative.MoPubNativeNetworkListener listener = finish();
+                if (listener != null) {
+                    listener.onNativeFail(errorCode);
+                }
+            }
+
+            /**
+             * Returns this instance to the idle ones, or destroys it along with the
+             * registration.
+             *
+             * @return the listener of the finished request, {@code null} if already finished.
+             */
+            @Nullable
+            private MoPubNative.MoPubNativeNetworkListener finish() {
+                MoPubNative.MoPubNativeNetworkListener listener = mListener;
+                mListener = null;
+                if (!mBusyRequests.remove(this)) {
+                    return listener;
+                }
+                if (mDestroyed) {
+                    mMoPubNative.destroy();
+                } else {
+                    mIdleRequests.add(this);
+                }
+                return listener;
+            }
+        }
+    }
+}
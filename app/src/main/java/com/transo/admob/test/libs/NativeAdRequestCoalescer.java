@@ -0,0 +1,269 @@
+package com.transo.admob.test.libs;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+
+import com.mopub.nativeads.MoPubNative;
+import com.mopub.nativeads.NativeAd;
+import com.mopub.nativeads.NativeErrorCode;
+import com.transo.admob.test.callback.NativeAdsCallback;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+/**
+ * Coalesces concurrent requests of {@link NativeAdsManager} for the same ad unit and
+ * configuration: callers arriving while requests are in flight wait for the next fill, and at
+ * most a set number of requests per ad unit are made at once. Each fill goes to the caller that
+ * has waited the longest, and each failed request fails that caller only; the others get a
+ * request of their own, unless the {@link AdFillTracker} is backing off from the ad unit.
+ * <p>
+ * All methods must be called on the main thread.
+ */
+final class NativeAdRequestCoalescer {
+
+    /**
+     * Makes the requests of one group of callers, and is released once none are left.
+     */
+    interface Source {
+
+        void makeRequest(@NonNull MoPubNative.MoPubNativeNetworkListener listener);
+
+        /**
+         * Disposes of an ad that no caller is waiting for anymore.
+         */
+        void discard(@Nullable NativeAd nativeAd);
+
+        void release();
+    }
+
+    interface SourceFactory {
+
+        @NonNull
+        Source create();
+    }
+
+    /**
+     * Callers waiting for an ad, grouped by what they request, and requests in flight per ad
+     * unit.
+     */
+    private final Map<RequestKey, RequestGroup> mRequestGroups = new HashMap<>();
+    private final Map<String, Integer> mInFlightRequests = new HashMap<>();
+
+    /**
+     * Runs failures of callers that no request was made for, or whose request failed before it
+     * was made, on a later main loop iteration, so that callers retrying on failure don't spin.
+     */
+    @NonNull
+    private final Executor mMainExecutor;
+    private int mMaxConcurrentRequests;
+
+    @VisibleForTesting
+    NativeAdRequestCoalescer(@NonNull Executor mainExecutor, int maxConcurrentRequests) {
+        mMainExecutor = mainExecutor;
+        mMaxConcurrentRequests = Math.max(1, maxConcurrentRequests);
+    }
+
+    @MainThread
+    void setMaxConcurrentRequests(int maxConcurrentRequests) {
+        mMaxConcurrentRequests = Math.max(1, maxConcurrentRequests);
+    }
+
+    /**
+     * @return the number of requests in flight for the given ad unit.
+     */
+    @MainThread
+    int getInFlightRequestCount(@NonNull String unitId) {
+        Integer count = mInFlightRequests.get(unitId);
+        return count != null ? count : 0;
+    }
+
+    /**
+     * @return the number of callers waiting for an ad of the given ad unit, whether a request
+     * is in flight for them or not.
+     */
+    @MainThread
+    int getWaitingCallerCount(@NonNull String unitId) {
+        int count = 0;
+        for (RequestGroup group : mRequestGroups.values()) {
+            if (group.key.unitId.equals(unitId)) {
+                count += group.callbacks.size();
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Queues the caller for an ad of the given ad unit and configuration, and requests one for
+     * it if the limit of the ad unit allows.
+     *
+     * @param configuration what, besides the ad unit, callers served by the same fill share.
+     * @param sourceFactory creates the source of the group, if none is waiting yet.
+     */
+    @MainThread
+    void subscribe(@NonNull String unitId, @NonNull Object configuration,
+                   @NonNull SourceFactory sourceFactory, @NonNull AdFillTracker fillTracker,
+                   @NonNull NativeAdsCallback callback) {
+        RequestKey key = new RequestKey(unitId, configuration);
+        RequestGroup group = mRequestGroups.get(key);
+        if (group == null) {
+            group = new RequestGroup(key, sourceFactory.create(), fillTracker);
+            mRequestGroups.put(key, group);
+        }
+        group.callbacks.offer(callback);
+        dispatch(group);
+    }
+
+    /**
+     * Starts requests for the callers of a group that no request is in flight for, within the
+     * concurrency limit of its ad unit.
+     */
+    private void dispatch(@NonNull RequestGroup group) {
+        String unitId = group.key.unitId;
+        while (group.callbacks.size() > group.inFlightCount &&
+                getInFlightRequestCount(unitId) < mMaxConcurrentRequests) {
+            if (!group.fillTracker.isWorthRequesting(unitId)) {
+                // The unit is backed off after a no-fill: callers no request is in flight for
+                // fail, posted like a request failure.
+                while (group.callbacks.size() > group.inFlightCount) {
+                    mMainExecutor.execute(group.callbacks.pollLast()::onFail);
+                }
+                break;
+            }
+            group.inFlightCount++;
+            mInFlightRequests.put(unitId, getInFlightRequestCount(unitId) + 1);
+            makeRequest(group);
+        }
+        if (group.callbacks.isEmpty() && group.inFlightCount == 0 &&
+                mRequestGroups.remove(group.key) != null) {
+            group.source.release();
+        }
+    }
+
+    /**
+     * Marks a request of the group as finished and lets waiting groups of the same ad unit use
+     * the freed request.
+     */
+    private void onRequestFinished(@NonNull RequestGroup group) {
+        String unitId = group.key.unitId;
+        group.inFlightCount--;
+        mInFlightRequests.put(unitId, getInFlightRequestCount(unitId) - 1);
+        for (RequestGroup waitingGroup : new ArrayList<>(mRequestGroups.values())) {
+            if (waitingGroup.key.unitId.equals(unitId)) {
+                dispatch(waitingGroup);
+            }
+        }
+    }
+
+    private void makeRequest(@NonNull RequestGroup group) {
+        RequestListener listener = new RequestListener(group);
+        group.source.makeRequest(listener);
+        listener.mRequestMade = true;
+    }
+
+    private final class RequestListener implements MoPubNative.MoPubNativeNetworkListener {
+
+        @NonNull
+        private final RequestGroup mGroup;
+
+        /**
+         * Whether {@link Source#makeRequest} returned, so that a failure reported before that
+         * doesn't reach the caller within {@link #subscribe}.
+         */
+        boolean mRequestMade;
+
+        RequestListener(@NonNull RequestGroup group) {
+            mGroup = group;
+        }
+
+        @Override
+        public void onNativeLoad(NativeAd nativeAd) {
+            mGroup.fillTracker.recordFill(mGroup.key.unitId);
+            NativeAdsCallback callback = mGroup.callbacks.poll();
+            onRequestFinished(mGroup);
+            if (callback != null) {
+                callback.onNative(nativeAd);
+            } else {
+                mGroup.source.discard(nativeAd);
+            }
+        }
+
+        @Override
+        public void onNativeFail(NativeErrorCode errorCode) {
+            if (AdFillTracker.isNoFill(errorCode)) {
+                mGroup.fillTracker.recordNoFill(mGroup.key.unitId);
+            }
+            // Only the caller the request was made for fails; the request it frees goes to
+            // those still uncovered.
+            NativeAdsCallback callback = mGroup.callbacks.poll();
+            onRequestFinished(mGroup);
+            if (callback == null) {
+                return;
+            }
+            if (mRequestMade) {
+                callback.onFail();
+            } else {
+                mMainExecutor.execute(callback::onFail);
+            }
+        }
+    }
+
+    /**
+     * Identifies requests that can be served by the same fill: the ad unit and either the
+     * registration of its layout, or the binders passed in.
+     */
+    private static final class RequestKey {
+
+        @NonNull
+        final String unitId;
+        @NonNull
+        final Object configuration;
+
+        RequestKey(@NonNull String unitId, @NonNull Object configuration) {
+            this.unitId = unitId;
+            this.configuration = configuration;
+        }
+
+        @Override
+        public boolean equals(Object object) {
+            if (!(object instanceof RequestKey)) {
+                return false;
+            }
+            RequestKey other = (RequestKey) object;
+            return unitId.equals(other.unitId) && configuration.equals(other.configuration);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * unitId.hashCode() + configuration.hashCode();
+        }
+    }
+
+    /**
+     * Callers waiting for an ad of the same {@link RequestKey}, in arrival order, and the number
+     * of requests in flight for them.
+     */
+    private static final class RequestGroup {
+
+        @NonNull
+        final RequestKey key;
+        @NonNull
+        final Source source;
+        @NonNull
+        final AdFillTracker fillTracker;
+        final ArrayDeque<NativeAdsCallback> callbacks = new ArrayDeque<>();
+        int inFlightCount;
+
+        RequestGroup(@NonNull RequestKey key, @NonNull Source source,
+                     @NonNull AdFillTracker fillTracker) {
+            this.key = key;
+            this.source = source;
+            this.fillTracker = fillTracker;
+        }
+    }
+}
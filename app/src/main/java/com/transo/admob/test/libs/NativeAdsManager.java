@@ -5,55 +5,121 @@ import android.os.Handler;
 import android.os.Looper;
 
 import androidx.annotation.LayoutRes;
+import androidx.annotation.MainThread;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
-import com.mopub.common.MoPub;
-import com.mopub.nativeads.GooglePlayServicesAdRenderer;
 import com.mopub.nativeads.MediaViewBinder;
 import com.mopub.nativeads.MoPubNative;
-import com.mopub.nativeads.MoPubStaticNativeAdRenderer;
 import com.mopub.nativeads.NativeAd;
 import com.mopub.nativeads.NativeErrorCode;
-import com.mopub.nativeads.RequestParameters;
 import com.mopub.nativeads.ViewBinder;
-import com.transo.admob.test.R;
 import com.transo.admob.test.callback.NativeAdsCallback;
 
-import java.util.EnumSet;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Set;
+import java.util.WeakHashMap;
 
 /**
- * Manages cache & timeout of native ads
+ * Manages cache & timeout of native ads. Concurrent requests for the same ad unit and layout,
+ * or binder instances, are coalesced: callers arriving while requests are in flight wait for
+ * the next fill, and at most {@link #DEFAULT_MAX_CONCURRENT_REQUESTS} requests per ad unit are
+ * made at once. Ad units the {@link AdFillTracker} is backing off from aren't requested at all.
  */
 @SuppressWarnings("unused")
 public class NativeAdsManager {
 
+    /**
+     * Default time a request waits for the MoPub SDK to finish initializing before failing.
+     */
+    public static final long DEFAULT_SDK_READY_TIMEOUT_MILLIS = 10000;
+
+    /**
+     * Default number of requests in flight at once per ad unit.
+     */
+    public static final int DEFAULT_MAX_CONCURRENT_REQUESTS = 2;
+
+    private static long sSdkReadyTimeoutMillis = DEFAULT_SDK_READY_TIMEOUT_MILLIS;
+
+    private static final NativeAdRequestCoalescer sCoalescer =
+            new NativeAdRequestCoalescer(NativeAdsManager::post, DEFAULT_MAX_CONCURRENT_REQUESTS);
+
+    @Nullable
+    private static Handler sMainHandler;
+
+    /**
+     * Ads loaded and not destroyed yet. Weak, so that ads dropped without being destroyed still
+     * leave the count once collected.
+     */
+    private static final Set<NativeAd> sLiveAds =
+            Collections.newSetFromMap(new WeakHashMap<NativeAd, Boolean>());
+    private static long sLoadedAdCount;
+    private static long sDestroyedAdCount;
+
+    /**
+     * Sets how long requests made before the MoPub SDK is initialized wait for it.
+     */
+    public static void setSdkReadyTimeout(long timeoutMillis) {
+        sSdkReadyTimeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * Destroys an ad loaded by this class and counts it as released. Does nothing for an ad
+     * destroyed before.
+     */
+    @MainThread
+    public static void destroyAd(@Nullable NativeAd nativeAd) {
+        if (nativeAd == null) {
+            return;
+        }
+        if (sLiveAds.remove(nativeAd)) {
+            sDestroyedAdCount++;
+        }
+        nativeAd.destroy();
+    }
+
+    /**
+     * @return the number of loaded ads that are neither destroyed nor garbage collected.
+     */
+    @MainThread
+    public static int getLiveAdCount() {
+        return sLiveAds.size();
+    }
+
+    @MainThread
+    public static long getLoadedAdCount() {
+        return sLoadedAdCount;
+    }
+
+    @MainThread
+    public static long getDestroyedAdCount() {
+        return sDestroyedAdCount;
+    }
+
     public static void setUpMoPubAdTryout(@NonNull final Context context, @NonNull String unitId,
                                           @LayoutRes int layoutId,
                                           @NonNull final NativeAdsCallback callback) {
-        ViewBinder viewBinder = new ViewBinder.Builder(layoutId).titleId(R.id.textView_title).iconImageId(R.id.imageView_icon)
-                .callToActionId(R.id.textView_cta)
-                .privacyInformationIconImageId(R.id.imageView_privacy).build();
-
-        MediaViewBinder mediaViewBinder =
-                new MediaViewBinder.Builder(layoutId).titleId(R.id.textView_title)
-                        // If you've content TextView
-                        // .textId(R.id.textView_content)
-                        .iconImageId(R.id.imageView_icon)
-                        // If you've MediaLayout
-                        // .mediaLayoutId(R.id.mediaLayout)
-                        .callToActionId(R.id.textView_cta)
-                        .privacyInformationIconImageId(R.id.imageView_privacy)
-                        // Must be FrameLayout
-                        .addExtra(
-                                GooglePlayServicesAdRenderer.VIEW_BINDER_KEY_AD_CHOICES_ICON_CONTAINER,
-                                R.id.view_privacy)
-                        // Must set parent view to UnifiedNativeAdView
-                        .addExtra(
-                                GooglePlayServicesAdRenderer.VIEW_BINDER_KEY_UNIFIED_NATIVE_AD_VIEW,
-                                R.id.unifiedNativeAdView).build();
-
-        setUpMoPubAdTryout(context, unitId, viewBinder, mediaViewBinder, callback);
+        setUpMoPubAdTryout(NativeAdRegistry.getDefault(context), unitId, layoutId, callback);
+    }
+
+    /**
+     * Requests an ad with the {@link MoPubNative} and renderers the given registry keeps for the
+     * ad unit and layout.
+     */
+    public static void setUpMoPubAdTryout(@NonNull final NativeAdRegistry registry,
+                                          @NonNull String unitId, @LayoutRes int layoutId,
+                                          @NonNull final NativeAdsCallback callback) {
+        if (!SdkReadyGate.isReady()) {
+            SdkReadyGate.await(() -> setUpMoPubAdTryout(registry, unitId, layoutId, callback),
+                    callback::onFail, sSdkReadyTimeoutMillis);
+            return;
+        }
+
+        final NativeAdRegistry.Registration registration = registry.obtain(unitId, layoutId);
+        sCoalescer.subscribe(unitId, registration,
+                () -> new RegistrationSource(registration, false),
+                AdFillTracker.getInstance(registry.getContext()), callback);
     }
 
     private static void setUpMoPubAdTryout(@NonNull final Context context,
@@ -63,70 +129,113 @@ public class NativeAdsManager {
         setUpMoPubAdTryout(context, unitId, viewBinder, null, callback);
     }
 
+    /**
+     * Requests an ad with the given binders. Binders don't compare by value, so requests are
+     * only coalesced when they pass the same binder instances: callers should build them once
+     * and reuse them, or use {@link #setUpMoPubAdTryout(NativeAdRegistry, String, int,
+     * NativeAdsCallback)}, which keys on the layout. Otherwise each call gets its own
+     * {@link MoPubNative}.
+     */
     public static void setUpMoPubAdTryout(@NonNull final Context context,
                                           @NonNull final String unitId,
                                           @NonNull final ViewBinder viewBinder,
                                           @Nullable final MediaViewBinder mediaViewBinder,
                                           @NonNull final NativeAdsCallback callback) {
-        if (!MoPub.isSdkInitialized()) {
-            new Thread(() -> {
-                int cnt = 0;
-                while (!MoPub.isSdkInitialized() && cnt <= 30) {
-                    try {
-                        Thread.sleep(100);
-                        cnt++;
-                    } catch (Exception ignore) {
-
-                    }
-                }
-                new Handler(Looper.getMainLooper()).post(() -> {
-                    if (MoPub.isSdkInitialized()) {
-                        setUpMoPubAdTryout(context, unitId, viewBinder, mediaViewBinder, callback);
-                    } else {
-                        callback.onFail();
-                    }
-                });
-            }).start();
+        if (!SdkReadyGate.isReady()) {
+            SdkReadyGate.await(
+                    () -> setUpMoPubAdTryout(context, unitId, viewBinder, mediaViewBinder, callback),
+                    callback::onFail, sSdkReadyTimeoutMillis);
             return;
         }
 
-        MoPubNative.MoPubNativeNetworkListener moPubNativeListener =
-                new MoPubNative.MoPubNativeNetworkListener() {
+        // Binders passed in aren't registered anywhere, so their MoPubNative instances only live
+        // as long as callers are waiting.
+        sCoalescer.subscribe(unitId, Arrays.asList(viewBinder, mediaViewBinder),
+                () -> new RegistrationSource(new NativeAdRegistry.Registration(context, unitId,
+                        viewBinder, mediaViewBinder), true),
+                AdFillTracker.getInstance(context), callback);
+    }
+
+    /**
+     * Sets how many requests may be in flight at once for one ad unit. Callers beyond it wait
+     * for the next fill instead of issuing a request of their own.
+     */
+    @MainThread
+    public static void setMaxConcurrentRequests(int maxConcurrentRequests) {
+        sCoalescer.setMaxConcurrentRequests(maxConcurrentRequests);
+    }
+
+    /**
+     * @return the number of requests in flight for the given ad unit.
+     */
+    @MainThread
+    public static int getInFlightRequestCount(@NonNull String unitId) {
+        return sCoalescer.getInFlightRequestCount(unitId);
+    }
 
-                    @Override
-                    public void onNativeLoad(NativeAd nativeAd) {
-                        callback.onNative(nativeAd);
-                    }
+    /**
+     * @return the number of callers waiting for an ad of the given ad unit, whether a request
+     * is in flight for them or not.
+     */
+    @MainThread
+    public static int getWaitingCallerCount(@NonNull String unitId) {
+        return sCoalescer.getWaitingCallerCount(unitId);
+    }
 
-                    @Override
-                    public void onNativeFail(NativeErrorCode errorCode) {
-                        callback.onFail();
-                    }
-                };
+    private static void post(@NonNull Runnable runnable) {
+        if (sMainHandler == null) {
+            sMainHandler = new Handler(Looper.getMainLooper());
+        }
+        sMainHandler.post(runnable);
+    }
 
-        // MoPub.initializeSdk(context, new SdkConfiguration.Builder(unitId).build(), null);
-        MoPubNative moPubNative = new MoPubNative(context, unitId, moPubNativeListener);
+    /**
+     * Makes the requests of a group of callers with a registration, counting the ads it loads,
+     * and destroys the registration with the group if nothing else keeps it.
+     */
+    private static final class RegistrationSource implements NativeAdRequestCoalescer.Source {
 
-        MoPubStaticNativeAdRenderer moPubStaticNativeAdRenderer =
-                new MoPubStaticNativeAdRenderer(viewBinder);
-        moPubNative.registerAdRenderer(moPubStaticNativeAdRenderer);
+        @NonNull
+        private final NativeAdRegistry.Registration mRegistration;
+        private final boolean mOwnsRegistration;
 
-        if (mediaViewBinder != null) {
-            GooglePlayServicesAdRenderer adMobAdRenderer =
-                    new GooglePlayServicesAdRenderer(mediaViewBinder);
-            moPubNative.registerAdRenderer(adMobAdRenderer);
+        RegistrationSource(@NonNull NativeAdRegistry.Registration registration,
+                           boolean ownsRegistration) {
+            mRegistration = registration;
+            mOwnsRegistration = ownsRegistration;
         }
 
-        EnumSet<RequestParameters.NativeAdAsset> assetsSet =
-                EnumSet.of(RequestParameters.NativeAdAsset.TITLE,
-                        RequestParameters.NativeAdAsset.TEXT,
-                        RequestParameters.NativeAdAsset.CALL_TO_ACTION_TEXT,
-                        RequestParameters.NativeAdAsset.ICON_IMAGE,
-                        RequestParameters.NativeAdAsset.MAIN_IMAGE);
-        RequestParameters requestParameters =
-                new RequestParameters.Builder().desiredAssets(assetsSet).build();
-        moPubNative.makeRequest(requestParameters);
-    }
+        @Override
+        public void makeRequest(
+                @NonNull final MoPubNative.MoPubNativeNetworkListener listener) {
+            StartupTrace.mark(StartupTrace.Milestone.FIRST_REQUEST);
+            mRegistration.makeRequest(new MoPubNative.MoPubNativeNetworkListener() {
+
+                @Override
+                public void onNativeLoad(NativeAd nativeAd) {
+                    StartupTrace.mark(StartupTrace.Milestone.FIRST_FILL);
+                    sLiveAds.add(nativeAd);
+                    sLoadedAdCount++;
+                    listener.onNativeLoad(nativeAd);
+                }
 
-}
+                @Override
+                public void onNativeFail(NativeErrorCode errorCode) {
+                    listener.onNativeFail(errorCode);
+                }
+            });
+        }
 
+        @Override
+        public void discard(@Nullable NativeAd nativeAd) {
+            destroyAd(nativeAd);
+        }
+
+        @Override
+        public void release() {
+            if (mOwnsRegistration) {
+                mRegistration.destroy();
+            }
+        }
+    }
+}
@@ -0,0 +1,323 @@
+package com.transo.admob.test.libs;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+
+import androidx.annotation.LayoutRes;
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+
+import com.mopub.nativeads.NativeAd;
+import com.transo.admob.test.callback.NativeAdsCallback;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps a number of ready {@link NativeAd}s per ad unit and layout so that a placement can be
+ * filled without waiting on the network. Ads are refilled in the background, failed requests
+ * after a growing delay, and destroyed once they reach their age limit, since AdMob unified ads
+ * expire after about an hour.
+ * <p>
+ * All methods must be called on the main thread, which is also where MoPub delivers its
+ * callbacks.
+ */
+@SuppressWarnings("unused")
+public class NativeAdsPool {
+
+    /**
+     * Default number of ads kept ready per ad unit and layout.
+     */
+    public static final int DEFAULT_CAPACITY = 2;
+
+    /**
+     * Default age after which a pooled ad is evicted. Kept below the one hour AdMob expiry so an
+     * ad is never handed out right before it goes stale.
+     */
+    public static final long DEFAULT_TTL_MILLIS = TimeUnit.MINUTES.toMillis(50);
+
+    /**
+     * Delay before slots whose request failed are requested again, doubled by each following
+     * failure up to {@link #MAX_RETRY_DELAY_MILLIS}.
+     */
+    private static final long BASE_RETRY_DELAY_MILLIS = TimeUnit.SECONDS.toMillis(10);
+    private static final long MAX_RETRY_DELAY_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+    /**
+     * Loads, destroys and times the pooled ads, through {@link NativeAdsManager} and the main
+     * thread outside of tests.
+     */
+    interface Environment {
+
+        void load(@NonNull Context context, @NonNull String unitId, @LayoutRes int layoutId,
+                  @NonNull NativeAdsCallback callback);
+
+        void destroy(@NonNull NativeAd nativeAd);
+
+        long elapsedRealtime();
+
+        void postDelayed(@NonNull Runnable runnable, long delayMillis);
+
+        void removeCallbacks(@NonNull Runnable runnable);
+    }
+
+    private static final Environment DEFAULT_ENVIRONMENT = new Environment() {
+
+        @Nullable
+        private Handler mHandler;
+
+        @Override
+        public void load(@NonNull Context context, @NonNull String unitId,
+                         @LayoutRes int layoutId, @NonNull NativeAdsCallback callback) {
+            NativeAdsManager.setUpMoPubAdTryout(context, unitId, layoutId, callback);
+        }
+
+        @Override
+        public void destroy(@NonNull NativeAd nativeAd) {
+            NativeAdsManager.destroyAd(nativeAd);
+        }
+
+        @Override
+        public long elapsedRealtime() {
+            return SystemClock.elapsedRealtime();
+        }
+
+        @Override
+        public void postDelayed(@NonNull Runnable runnable, long delayMillis) {
+            if (mHandler == null) {
+                mHandler = new Handler(Looper.getMainLooper());
+            }
+            mHandler.postDelayed(runnable, delayMillis);
+        }
+
+        @Override
+        public void removeCallbacks(@NonNull Runnable runnable) {
+            if (mHandler != null) {
+                mHandler.removeCallbacks(runnable);
+            }
+        }
+    };
+
+    private static final Map<String, NativeAdsPool> sPools = new HashMap<>();
+
+    @NonNull
+    private final Environment mEnvironment;
+    @NonNull
+    private final Context mContext;
+    @NonNull
+    private final String mUnitId;
+    @LayoutRes
+    private final int mLayoutId;
+    private final int mCapacity;
+    private final long mTtlMillis;
+
+    private final ArrayDeque<Entry> mEntries = new ArrayDeque<>();
+    private final Runnable mEvictExpired = this::evictExpired;
+    private final Runnable mRetryRefill = this::refill;
+    private int mInFlightCount;
+    private int mFailureCount;
+    private boolean mDestroyed;
+
+    @VisibleForTesting
+    NativeAdsPool(@NonNull Environment environment, @NonNull Context context,
+                  @NonNull String unitId, @LayoutRes int layoutId, int capacity,
+                  long ttlMillis) {
+        mEnvironment = environment;
+        mContext = context;
+        mUnitId = unitId;
+        mLayoutId = layoutId;
+        mCapacity = capacity;
+        mTtlMillis = ttlMillis;
+    }
+
+    /**
+     * Returns the shared pool for the given ad unit and layout, creating and filling it with the
+     * default capacity and age limit on first use.
+     */
+    @MainThread
+    @NonNull
+    public static NativeAdsPool get(@NonNull Context context, @NonNull String unitId,
+                                    @LayoutRes int layoutId) {
+        NativeAdsPool pool = sPools.get(getKey(unitId, layoutId));
+        if (pool != null) {
+            return pool;
+        }
+        return get(context, unitId, layoutId, DEFAULT_CAPACITY, DEFAULT_TTL_MILLIS);
+    }
+
+    /**
+     * Returns the shared pool for the given ad unit and layout, creating and filling it on first
+     * use.
+     *
+     * @throws IllegalArgumentException if the pool exists with another capacity or age limit.
+     */
+    @MainThread
+    @NonNull
+    public static NativeAdsPool get(@NonNull Context context, @NonNull String unitId,
+                                    @LayoutRes int layoutId, int capacity, long ttlMillis) {
+        String key = getKey(unitId, layoutId);
+        capacity = Math.max(1, capacity);
+        NativeAdsPool pool = sPools.get(key);
+        if (pool == null) {
+            pool = new NativeAdsPool(DEFAULT_ENVIRONMENT, context.getApplicationContext(),
+                    unitId, layoutId, capacity, ttlMillis);
+            sPools.put(key, pool);
+            pool.refill();
+        } else if (pool.mCapacity != capacity || pool.mTtlMillis != ttlMillis) {
+            throw new IllegalArgumentException("The pool of " + key + " keeps " +
+                    pool.mCapacity + " ads for " + pool.mTtlMillis + " ms, not " + capacity +
+                    " ads for " + ttlMillis + " ms.");
+        }
+        return pool;
+    }
+
+    /**
+     * Returns a ready ad or {@code null} if none is loaded yet. Never blocks; a refill is
+     * scheduled for the slot that was taken.
+     */
+    @MainThread
+    @Nullable
+    public NativeAd dequeue() {
+        evictExpired();
+        Entry entry = mEntries.poll();
+        refill();
+        return entry != null ? entry.nativeAd : null;
+    }
+
+    /**
+     * @return the number of ads currently ready to be dequeued.
+     */
+    @MainThread
+    public int size() {
+        evictExpired();
+        return mEntries.size();
+    }
+
+    /**
+     * Requests as many ads as are needed to get the pool back to its capacity.
+     */
+    @MainThread
+    public void refill() {
+        if (mDestroyed) {
+            return;
+        }
+        // The count is settled before loading, as a load may fail before it returns.
+        int loadCount = mCapacity - mEntries.size() - mInFlightCount;
+        for (int i = 0; i < loadCount; i++) {
+            mInFlightCount++;
+            mEnvironment.load(mContext, mUnitId, mLayoutId, new NativeAdsCallback() {
+
+                @Override
+                public void onNative(NativeAd nativeAd) {
+                    mInFlightCount--;
+                    if (mDestroyed) {
+                        mEnvironment.destroy(nativeAd);
+                        return;
+                    }
+                    mFailureCount = 0;
+                    mEntries.offer(new Entry(nativeAd, mEnvironment.elapsedRealtime()));
+                    if (mEntries.size() == 1) {
+                        scheduleEviction();
+                    }
+                }
+
+                @Override
+                public void onFail() {
+                    // Not retried right away, so that a unit without fill isn't hammered.
+                    mInFlightCount--;
+                    if (!mDestroyed) {
+                        scheduleRetry();
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Destroys all pooled ads and removes this pool. Requests still in flight are destroyed when
+     * they arrive.
+     */
+    @MainThread
+    public void destroy() {
+        mDestroyed = true;
+        mEnvironment.removeCallbacks(mEvictExpired);
+        mEnvironment.removeCallbacks(mRetryRefill);
+        for (Entry entry : mEntries) {
+            mEnvironment.destroy(entry.nativeAd);
+        }
+        mEntries.clear();
+        String key = getKey(mUnitId, mLayoutId);
+        if (sPools.get(key) == this) {
+            sPools.remove(key);
+        }
+    }
+
+    /**
+     * Destroys the ads that reached their age limit and refills their slots, then schedules the
+     * next eviction.
+     */
+    private void evictExpired() {
+        long now = mEnvironment.elapsedRealtime();
+        boolean evicted = false;
+        Iterator<Entry> iterator = mEntries.iterator();
+        while (iterator.hasNext()) {
+            Entry entry = iterator.next();
+            if (now - entry.loadedAtMillis >= mTtlMillis) {
+                mEnvironment.destroy(entry.nativeAd);
+                iterator.remove();
+                evicted = true;
+            }
+        }
+        scheduleEviction();
+        if (evicted) {
+            refill();
+        }
+    }
+
+    /**
+     * Schedules a refill after a failed request, later with each consecutive failure.
+     */
+    private void scheduleRetry() {
+        mEnvironment.removeCallbacks(mRetryRefill);
+        mEnvironment.postDelayed(mRetryRefill, Math.min(MAX_RETRY_DELAY_MILLIS,
+                BASE_RETRY_DELAY_MILLIS << Math.min(mFailureCount, 10)));
+        mFailureCount++;
+    }
+
+    /**
+     * Schedules an eviction for when the oldest ad reaches its age limit, so that expired ads
+     * are destroyed even if the pool isn't used.
+     */
+    private void scheduleEviction() {
+        mEnvironment.removeCallbacks(mEvictExpired);
+        Entry oldest = mEntries.peek();
+        if (oldest != null) {
+            mEnvironment.postDelayed(mEvictExpired, Math.max(0,
+                    oldest.loadedAtMillis + mTtlMillis - mEnvironment.elapsedRealtime()));
+        }
+    }
+
+    @NonNull
+    private static String getKey(@NonNull String unitId, @LayoutRes int layoutId) {
+        return unitId + '#' + layoutId;
+    }
+
+    private static class Entry {
+
+        @NonNull
+        final NativeAd nativeAd;
+        final long loadedAtMillis;
+
+        Entry(@NonNull NativeAd nativeAd, long loadedAtMillis) {
+            this.nativeAd = nativeAd;
+            this.loadedAtMillis = loadedAtMillis;
+        }
+    }
+}
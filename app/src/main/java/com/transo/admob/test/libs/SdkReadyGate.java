@@ -0,0 +1,84 @@
+package com.transo.admob.test.libs;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+
+import com.mopub.common.MoPub;
+import com.mopub.common.SdkInitializationListener;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Single shared readiness signal for the MoPub SDK. Work queued before the SDK has finished
+ * initializing runs on the main thread as soon as the {@link SdkInitializationListener} returned
+ * by {@link #getInitializationListener()} fires, or fails once its deadline passes.
+ */
+public final class SdkReadyGate {
+
+    private static final Handler sHandler = new Handler(Looper.getMainLooper());
+    private static final List<Waiter> sWaiters = new ArrayList<>();
+
+    private static volatile boolean sReady;
+
+    private SdkReadyGate() {
+    }
+
+    /**
+     * @return the listener to pass to {@link MoPub#initializeSdk}.
+     */
+    @NonNull
+    public static SdkInitializationListener getInitializationListener() {
+        return () -> sHandler.post(SdkReadyGate::open);
+    }
+
+    public static boolean isReady() {
+        return sReady || MoPub.isSdkInitialized();
+    }
+
+    /**
+     * Runs {@code onReady} once the SDK is initialized, or {@code onTimeout} if that does not
+     * happen within {@code timeoutMillis}. Exactly one of the two is called.
+     */
+    @MainThread
+    public static void await(@NonNull Runnable onReady, @NonNull Runnable onTimeout,
+                             long timeoutMillis) {
+        if (isReady()) {
+            onReady.run();
+            return;
+        }
+        final Waiter waiter = new Waiter(onReady);
+        waiter.timeout = () -> {
+            if (sWaiters.remove(waiter)) {
+                onTimeout.run();
+            }
+        };
+        sWaiters.add(waiter);
+        sHandler.postDelayed(waiter.timeout, timeoutMillis);
+    }
+
+    @MainThread
+    private static void open() {
+        sReady = true;
+        StartupTrace.mark(StartupTrace.Milestone.MOPUB_INIT_FINISH);
+        List<Waiter> waiters = new ArrayList<>(sWaiters);
+        sWaiters.clear();
+        for (Waiter waiter : waiters) {
+            sHandler.removeCallbacks(waiter.timeout);
+            waiter.onReady.run();
+        }
+    }
+
+    private static class Waiter {
+
+        final Runnable onReady;
+        Runnable timeout;
+
+        Waiter(Runnable onReady) {
+            this.onReady = onReady;
+        }
+    }
+}
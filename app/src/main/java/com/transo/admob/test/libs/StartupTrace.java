@@ -0,0 +1,81 @@
+package com.transo.admob.test.libs;
+
+import android.os.SystemClock;
+import android.os.Trace;
+
+import androidx.annotation.NonNull;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Records when the ad SDKs come up during a cold start. Each {@link Milestone} keeps the
+ * {@link SystemClock#elapsedRealtime()} of its first occurrence only, and shows up in systrace as
+ * a section named after it. Spans that start and end on one thread can also be traced with
+ * {@link #beginSection(String)} and {@link #endSection()}.
+ */
+public final class StartupTrace {
+
+    private static final String SECTION_PREFIX = "AdStartup:";
+
+    public enum Milestone {
+        APP_START,
+        MULTIDEX_INSTALLED,
+        MOPUB_INIT_START,
+        MOPUB_INIT_FINISH,
+        MOBILE_ADS_INIT_START,
+        MOBILE_ADS_INIT_FINISH,
+        FIRST_REQUEST,
+        FIRST_FILL,
+        FIRST_RENDER
+    }
+
+    private static final Milestone[] MILESTONES = Milestone.values();
+
+    /**
+     * Timestamp of each milestone, zero until it is reached.
+     */
+    private static final AtomicLongArray sTimestamps = new AtomicLongArray(MILESTONES.length);
+
+    private StartupTrace() {
+    }
+
+    /**
+     * Records the milestone unless it has been reached before. Safe to call from any thread.
+     */
+    public static void mark(@NonNull Milestone milestone) {
+        // Zero means unset, so a reading of zero is stored as one.
+        long now = Math.max(1, SystemClock.elapsedRealtime());
+        if (sTimestamps.compareAndSet(milestone.ordinal(), 0, now)) {
+            // Async sections need API 29, so milestones are traced as instant sections.
+            Trace.beginSection(SECTION_PREFIX + milestone.name());
+            Trace.endSection();
+        }
+    }
+
+    public static void beginSection(@NonNull String name) {
+        Trace.beginSection(SECTION_PREFIX + name);
+    }
+
+    public static void endSection() {
+        Trace.endSection();
+    }
+
+    /**
+     * @return the milestones reached so far, in startup order, with their time in milliseconds
+     * since {@link Milestone#APP_START}, or their raw timestamp if the app start was not recorded.
+     */
+    @NonNull
+    public static Map<Milestone, Long> getReport() {
+        long origin = sTimestamps.get(Milestone.APP_START.ordinal());
+        Map<Milestone, Long> report = new LinkedHashMap<>();
+        for (Milestone milestone : MILESTONES) {
+            long timestamp = sTimestamps.get(milestone.ordinal());
+            if (timestamp != 0) {
+                report.put(milestone, timestamp - origin);
+            }
+        }
+        return report;
+    }
+}
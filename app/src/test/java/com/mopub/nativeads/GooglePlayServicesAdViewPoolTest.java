@@ -0,0 +1,148 @@
+package com.mopub.nativeads;
+
+import android.app.Activity;
+import android.content.Context;
+import android.os.MessageQueue;
+import android.view.View;
+import android.view.ViewGroup;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for {@link GooglePlayServicesAdViewPool}, with a fake host that remembers the
+ * context of each view it inflates and runs idle handlers when told to.
+ */
+public class GooglePlayServicesAdViewPoolTest {
+
+    private static final int LAYOUT_ID = 1;
+
+    private FakeHost mHost;
+    private GooglePlayServicesAdViewPool mPool;
+
+    @Before
+    public void setUp() {
+        mHost = new FakeHost();
+        mPool = new GooglePlayServicesAdViewPool(mHost);
+    }
+
+    @Test
+    public void prefill_shouldInflateWithContextWhenIdle() {
+        Activity activity = new Activity();
+
+        mPool.prefill(activity, LAYOUT_ID, 2);
+        mHost.runIdleHandlers();
+
+        assertEquals(2, mHost.inflatedCount);
+        assertEquals(0, mPool.getPrefillTaskCount());
+        View view = mPool.obtain(activity, LAYOUT_ID, null);
+        assertSame(activity, mHost.contexts.get(view));
+        assertEquals(2, mHost.inflatedCount);
+    }
+
+    @Test
+    public void clear_withContext_shouldCancelItsPendingPrefill() {
+        Activity destroyedActivity = new Activity();
+        mPool.prefill(destroyedActivity, LAYOUT_ID, 2);
+
+        mPool.clear(destroyedActivity);
+        mHost.runIdleHandlers();
+
+        assertEquals(0, mHost.inflatedCount);
+        assertEquals(0, mPool.getPrefillTaskCount());
+        assertTrue(mHost.idleHandlers.isEmpty());
+    }
+
+    @Test
+    public void prefill_withOtherContext_shouldNotBeBlockedByPendingOne() {
+        Activity firstActivity = new Activity();
+        Activity secondActivity = new Activity();
+        mPool.prefill(firstActivity, LAYOUT_ID, 1);
+
+        mPool.prefill(secondActivity, LAYOUT_ID, 1);
+        mPool.prefill(secondActivity, LAYOUT_ID, 1);
+
+        assertEquals(2, mPool.getPrefillTaskCount());
+    }
+
+    @Test
+    public void obtain_shouldDropViewsOfOtherContexts() {
+        Activity firstActivity = new Activity();
+        Activity secondActivity = new Activity();
+        View view = mPool.obtain(firstActivity, LAYOUT_ID, null);
+        mPool.recycle(view);
+
+        View otherView = mPool.obtain(secondActivity, LAYOUT_ID, null);
+
+        assertNotSame(view, otherView);
+        assertSame(secondActivity, mHost.contexts.get(otherView));
+        assertEquals(2, mHost.inflatedCount);
+    }
+
+    private static class FakeHost implements GooglePlayServicesAdViewPool.Host {
+
+        final Map<View, Context> contexts = new IdentityHashMap<>();
+        final List<MessageQueue.IdleHandler> idleHandlers = new ArrayList<>();
+        int inflatedCount;
+
+        void runIdleHandlers() {
+            while (!idleHandlers.isEmpty()) {
+                for (MessageQueue.IdleHandler idleHandler : new ArrayList<>(idleHandlers)) {
+                    if (!idleHandler.queueIdle()) {
+                        idleHandlers.remove(idleHandler);
+                    }
+                }
+            }
+        }
+
+        @NonNull
+        @Override
+        public View inflate(@NonNull Context context, int layoutId,
+                            @Nullable ViewGroup parent) {
+            inflatedCount++;
+            View view = new View(context);
+            contexts.put(view, context);
+            return view;
+        }
+
+        @Nullable
+        @Override
+        public Integer getLayoutId(@NonNull View view) {
+            return contexts.containsKey(view) ? LAYOUT_ID : null;
+        }
+
+        @Nullable
+        @Override
+        public Context getContext(@NonNull View view) {
+            return contexts.get(view);
+        }
+
+        @Override
+        public boolean hasParent(@NonNull View view) {
+            return false;
+        }
+
+        @Override
+        public void addIdleHandler(@NonNull MessageQueue.IdleHandler idleHandler) {
+            idleHandlers.add(idleHandler);
+        }
+
+        @Override
+        public void removeIdleHandler(@NonNull MessageQueue.IdleHandler idleHandler) {
+            idleHandlers.remove(idleHandler);
+        }
+    }
+}
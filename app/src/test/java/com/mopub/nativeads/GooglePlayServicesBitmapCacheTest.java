@@ -0,0 +1,30 @@
+package com.mopub.nativeads;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Unit tests for the downsampling of {@link GooglePlayServicesBitmapCache}.
+ */
+public class GooglePlayServicesBitmapCacheTest {
+
+    @Test
+    public void computeSampleSize_shouldKeepImageAtLeastAsLargeAsTarget() {
+        assertEquals(4, GooglePlayServicesBitmapCache.computeSampleSize(1200, 627, 144, 144));
+        assertEquals(2, GooglePlayServicesBitmapCache.computeSampleSize(300, 300, 144, 144));
+        assertEquals(1, GooglePlayServicesBitmapCache.computeSampleSize(200, 200, 144, 144));
+    }
+
+    @Test
+    public void computeSampleSize_withUnknownTarget_shouldNotDownsample() {
+        assertEquals(1, GooglePlayServicesBitmapCache.computeSampleSize(1200, 627, 0, 144));
+    }
+
+    @Test
+    public void getTargetSize_beforeFirstLayout_shouldFallBackToFixedLayoutSize() {
+        assertEquals(96, GooglePlayServicesBitmapCache.getTargetSize(0, 96));
+        assertEquals(144, GooglePlayServicesBitmapCache.getTargetSize(144, 96));
+        assertEquals(0, GooglePlayServicesBitmapCache.getTargetSize(0, -2));
+    }
+}
@@ -0,0 +1,163 @@
+package com.mopub.nativeads;
+
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for {@link GooglePlayServicesCreativeCache}, against a temporary directory and a
+ * local HTTP server.
+ */
+public class GooglePlayServicesCreativeCacheTest {
+
+    private static final String URL_A = "https://example.com/a.png";
+    private static final String URL_B = "https://example.com/b.png";
+    private static final String URL_C = "https://example.com/c.png";
+
+    private File mDirectory;
+    private GooglePlayServicesCreativeCache mCache;
+
+    @Before
+    public void setUp() throws IOException {
+        mDirectory = Files.createTempDirectory("creatives").toFile();
+        mCache = new GooglePlayServicesCreativeCache(mDirectory, 100);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        mCache.close();
+        File[] files = mDirectory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        mDirectory.delete();
+    }
+
+    @Test
+    public void get_afterReopen_shouldReturnCachedBytes() throws IOException {
+        mCache.put(URL_A, bytes(40, 1), Long.MAX_VALUE);
+
+        reopen();
+
+        assertArrayEquals(bytes(40, 1), mCache.get(URL_A));
+        assertNull(mCache.get(URL_B));
+    }
+
+    @Test
+    public void get_withExpiredEntry_shouldReturnNull() throws IOException {
+        mCache.put(URL_A, bytes(10, 1), System.currentTimeMillis() - 1);
+
+        assertNull(mCache.get(URL_A));
+        assertEquals(0, mCache.getSizeBytes());
+    }
+
+    @Test
+    public void put_overSizeLimit_shouldEvictLeastRecentlyUsed() throws Exception {
+        mCache.put(URL_A, bytes(40, 1), Long.MAX_VALUE);
+        Thread.sleep(2);
+        mCache.put(URL_B, bytes(40, 2), Long.MAX_VALUE);
+        Thread.sleep(2);
+        mCache.get(URL_A);
+        Thread.sleep(2);
+
+        mCache.put(URL_C, bytes(40, 3), Long.MAX_VALUE);
+
+        assertArrayEquals(bytes(40, 1), mCache.get(URL_A));
+        assertNull(mCache.get(URL_B));
+        assertArrayEquals(bytes(40, 3), mCache.get(URL_C));
+        assertEquals(80, mCache.getSizeBytes());
+    }
+
+    @Test
+    public void put_manyTimes_shouldCompactDataFileAndKeepLiveEntries() throws IOException {
+        for (int i = 0; i < 50; i++) {
+            mCache.put(URL_A, bytes(30, i), Long.MAX_VALUE);
+        }
+
+        reopen();
+
+        assertArrayEquals(bytes(30, 49), mCache.get(URL_A));
+        long dataBytes = 0;
+        for (File file : mDirectory.listFiles()) {
+            if (file.getName().startsWith("data.")) {
+                dataBytes += file.length();
+            }
+        }
+        assertTrue(dataBytes <= 2 * 100 + 30);
+    }
+
+    @Test
+    public void get_withDamagedData_shouldReturnNull() throws IOException {
+        mCache.put(URL_A, bytes(20, 1), Long.MAX_VALUE);
+        mCache.close();
+        for (File file : mDirectory.listFiles()) {
+            if (file.getName().startsWith("data.")) {
+                try (RandomAccessFile data = new RandomAccessFile(file, "rw")) {
+                    data.setLength(10);
+                    data.setLength(20);
+                }
+            }
+        }
+
+        mCache = new GooglePlayServicesCreativeCache(mDirectory, 100);
+
+        assertNull(mCache.get(URL_A));
+    }
+
+    @Test
+    public void load_shouldDownloadRepeatCreativeOnlyOnce() throws IOException {
+        final byte[] body = "creative".getBytes(StandardCharsets.UTF_8);
+        final AtomicInteger requestCount = new AtomicInteger();
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            requestCount.incrementAndGet();
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+        try {
+            String url = "http://127.0.0.1:" + server.getAddress().getPort() + "/icon.png";
+
+            assertArrayEquals(body, mCache.load(url));
+            reopen();
+            assertArrayEquals(body, mCache.load(url));
+
+            assertEquals(1, requestCount.get());
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    private void reopen() throws IOException {
+        mCache.close();
+        mCache = new GooglePlayServicesCreativeCache(mDirectory, 100);
+    }
+
+    private static byte[] bytes(int length, int seed) {
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = (byte) (seed + i);
+        }
+        return bytes;
+    }
+}
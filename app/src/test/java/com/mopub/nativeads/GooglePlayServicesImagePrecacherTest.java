@@ -0,0 +1,137 @@
+package com.mopub.nativeads;
+
+import android.content.Context;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for {@link GooglePlayServicesImagePrecacher}, using a fake image loader that records
+ * the requested URLs and reports every download as cached.
+ */
+public class GooglePlayServicesImagePrecacherTest {
+
+    private static final String MAIN_IMAGE_URL = "https://example.com/main.png";
+    private static final String ICON_IMAGE_URL = "https://example.com/icon.png";
+
+    private FakeImageLoader mImageLoader;
+    private RecordingImageListener mImageListener;
+
+    @Before
+    public void setUp() {
+        mImageLoader = new FakeImageLoader();
+        mImageListener = new RecordingImageListener();
+    }
+
+    @Test
+    public void preCache_withoutMediaSlot_shouldOnlyDownloadIcon() {
+        GooglePlayServicesImagePrecacher precacher =
+                new GooglePlayServicesImagePrecacher(mImageLoader, false, false,
+                        EnumSet.of(RequestParameters.NativeAdAsset.TITLE,
+                                RequestParameters.NativeAdAsset.ICON_IMAGE));
+
+        precacher.preCache(null, MAIN_IMAGE_URL, ICON_IMAGE_URL, mImageListener);
+
+        assertEquals(Collections.singletonList(ICON_IMAGE_URL), mImageLoader.getRequestedUrls());
+        assertEquals(1, mImageListener.cachedCount);
+    }
+
+    @Test
+    public void preCache_withMediaSlot_shouldDownloadBothImages() {
+        GooglePlayServicesImagePrecacher precacher =
+                new GooglePlayServicesImagePrecacher(mImageLoader, false, false,
+                        EnumSet.of(RequestParameters.NativeAdAsset.ICON_IMAGE,
+                                RequestParameters.NativeAdAsset.MAIN_IMAGE));
+
+        precacher.preCache(null, MAIN_IMAGE_URL, ICON_IMAGE_URL, mImageListener);
+
+        assertEquals(Arrays.asList(MAIN_IMAGE_URL, ICON_IMAGE_URL),
+                mImageLoader.getRequestedUrls());
+        assertEquals(1, mImageListener.cachedCount);
+    }
+
+    @Test
+    public void preCache_withUnknownRenderableAssets_shouldDownloadBothImages() {
+        GooglePlayServicesImagePrecacher precacher =
+                new GooglePlayServicesImagePrecacher(mImageLoader, false, false, null);
+
+        precacher.preCache(null, MAIN_IMAGE_URL, ICON_IMAGE_URL, mImageListener);
+
+        assertEquals(Arrays.asList(MAIN_IMAGE_URL, ICON_IMAGE_URL),
+                mImageLoader.getRequestedUrls());
+    }
+
+    @Test
+    public void preCache_withNoRenderableImages_shouldReportCachedWithoutDownloading() {
+        GooglePlayServicesImagePrecacher precacher =
+                new GooglePlayServicesImagePrecacher(mImageLoader, false, false,
+                        EnumSet.of(RequestParameters.NativeAdAsset.TITLE));
+
+        precacher.preCache(null, MAIN_IMAGE_URL, ICON_IMAGE_URL, mImageListener);
+
+        assertTrue(mImageLoader.getRequestedUrls().isEmpty());
+        assertEquals(1, mImageListener.cachedCount);
+    }
+
+    @Test
+    public void preCache_withIconRequired_shouldNotGateOnMainImage() {
+        mImageLoader.failUrl = MAIN_IMAGE_URL;
+        GooglePlayServicesImagePrecacher precacher =
+                new GooglePlayServicesImagePrecacher(mImageLoader, false, true, null);
+
+        precacher.preCache(null, MAIN_IMAGE_URL, ICON_IMAGE_URL, mImageListener);
+
+        assertEquals(1, mImageListener.cachedCount);
+        assertEquals(0, mImageListener.failedCount);
+    }
+
+    private static class FakeImageLoader implements GooglePlayServicesImagePrecacher.ImageLoader {
+
+        final List<List<String>> requests = new ArrayList<>();
+        String failUrl;
+
+        @Override
+        public void preCacheImages(Context context, List<String> imageUrls,
+                                   NativeImageHelper.ImageListener imageListener) {
+            requests.add(imageUrls);
+            if (imageUrls.contains(failUrl)) {
+                imageListener.onImagesFailedToCache(NativeErrorCode.IMAGE_DOWNLOAD_FAILURE);
+            } else {
+                imageListener.onImagesCached();
+            }
+        }
+
+        List<String> getRequestedUrls() {
+            List<String> urls = new ArrayList<>();
+            for (List<String> request : requests) {
+                urls.addAll(request);
+            }
+            return urls;
+        }
+    }
+
+    private static class RecordingImageListener implements NativeImageHelper.ImageListener {
+
+        int cachedCount;
+        int failedCount;
+
+        @Override
+        public void onImagesCached() {
+            cachedCount++;
+        }
+
+        @Override
+        public void onImagesFailedToCache(NativeErrorCode errorCode) {
+            failedCount++;
+        }
+    }
+}
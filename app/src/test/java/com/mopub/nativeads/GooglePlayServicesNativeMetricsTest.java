@@ -0,0 +1,46 @@
+package com.mopub.nativeads;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Unit tests for the latency buckets of {@link GooglePlayServicesNativeMetrics}.
+ */
+public class GooglePlayServicesNativeMetricsTest {
+
+    @Test
+    public void bucketOf_shouldUsePowerOfTwoUpperBounds() {
+        assertEquals(0, GooglePlayServicesNativeMetrics.bucketOf(0));
+        assertEquals(1, GooglePlayServicesNativeMetrics.bucketOf(1));
+        assertEquals(2, GooglePlayServicesNativeMetrics.bucketOf(3));
+        assertEquals(10, GooglePlayServicesNativeMetrics.bucketOf(1023));
+        assertEquals(11, GooglePlayServicesNativeMetrics.bucketOf(1024));
+        assertEquals(GooglePlayServicesNativeMetrics.BUCKET_COUNT - 1,
+                GooglePlayServicesNativeMetrics.bucketOf(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void getPercentileMillis_shouldReturnUpperBoundOfBucket() {
+        long[] counts = new long[GooglePlayServicesNativeMetrics.BUCKET_COUNT];
+        counts[GooglePlayServicesNativeMetrics.bucketOf(100)] = 90;
+        counts[GooglePlayServicesNativeMetrics.bucketOf(3000)] = 10;
+        GooglePlayServicesNativeMetrics.Histogram histogram =
+                new GooglePlayServicesNativeMetrics.Histogram(counts, 90 * 100 + 10 * 3000);
+
+        assertEquals(100, histogram.getCount());
+        assertEquals(390, histogram.getMeanMillis());
+        assertEquals(128, histogram.getPercentileMillis(50));
+        assertEquals(128, histogram.getPercentileMillis(90));
+        assertEquals(4096, histogram.getPercentileMillis(95));
+    }
+
+    @Test
+    public void getPercentileMillis_withoutSamples_shouldReturnZero() {
+        GooglePlayServicesNativeMetrics.Histogram histogram =
+                new GooglePlayServicesNativeMetrics.Histogram(
+                        new long[GooglePlayServicesNativeMetrics.BUCKET_COUNT], 0);
+
+        assertEquals(0, histogram.getPercentileMillis(99));
+    }
+}
@@ -0,0 +1,84 @@
+package com.transo.admob.test.libs;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for the backoff of {@link AdFillTracker}.
+ */
+public class AdFillTrackerTest {
+
+    private static final String UNIT_ID = "unit";
+
+    @Test
+    public void computeBackoffMillis_shouldDoubleUpToMaximum() {
+        assertEquals(AdFillTracker.BASE_BACKOFF_MILLIS,
+                AdFillTracker.computeBackoffMillis(1, 0, 1));
+        assertEquals(4 * AdFillTracker.BASE_BACKOFF_MILLIS,
+                AdFillTracker.computeBackoffMillis(3, 0, 1));
+        assertEquals(AdFillTracker.MAX_BACKOFF_MILLIS,
+                AdFillTracker.computeBackoffMillis(40, 0, 1));
+    }
+
+    @Test
+    public void computeBackoffMillis_withHighFillRate_shouldShortenDelay() {
+        assertEquals(AdFillTracker.BASE_BACKOFF_MILLIS / 4,
+                AdFillTracker.computeBackoffMillis(1, 0.9f, 1));
+        assertEquals(AdFillTracker.BASE_BACKOFF_MILLIS / 2,
+                AdFillTracker.computeBackoffMillis(1, 0.5f, 1));
+    }
+
+    @Test
+    public void recordNoFill_shouldBackOffUntilDelayHasPassed() {
+        AdFillTracker tracker = new AdFillTracker(null, new Random(0));
+        assertTrue(tracker.isWorthRequesting(UNIT_ID, 0));
+
+        tracker.recordNoFill(UNIT_ID, 0);
+
+        long retryDelayMillis = tracker.getRetryDelayMillis(UNIT_ID, 0);
+        assertTrue(retryDelayMillis > 0);
+        assertFalse(tracker.isWorthRequesting(UNIT_ID, retryDelayMillis - 1));
+        assertTrue(tracker.isWorthRequesting(UNIT_ID, retryDelayMillis));
+    }
+
+    @Test
+    public void recordNoFill_ofNewUnit_shouldBackOffForBaseDelay() {
+        AdFillTracker tracker = new AdFillTracker(null, new Random(0));
+
+        tracker.recordNoFill(UNIT_ID, 0);
+
+        long retryDelayMillis = tracker.getRetryDelayMillis(UNIT_ID, 0);
+        assertTrue(retryDelayMillis >= AdFillTracker.BASE_BACKOFF_MILLIS * 0.8);
+        assertTrue(retryDelayMillis <= AdFillTracker.BASE_BACKOFF_MILLIS * 1.2);
+    }
+
+    @Test
+    public void recordNoFill_afterEnoughFills_shouldShortenDelay() {
+        AdFillTracker tracker = new AdFillTracker(null, new Random(0));
+        for (int i = 0; i < AdFillTracker.MIN_FILL_RATE_SAMPLES; i++) {
+            tracker.recordFill(UNIT_ID);
+        }
+
+        tracker.recordNoFill(UNIT_ID, 0);
+
+        assertTrue(tracker.getRetryDelayMillis(UNIT_ID, 0) <=
+                AdFillTracker.BASE_BACKOFF_MILLIS / 4 * 1.2);
+    }
+
+    @Test
+    public void recordFill_shouldEndBackoff() {
+        AdFillTracker tracker = new AdFillTracker(null, new Random(0));
+        tracker.recordNoFill(UNIT_ID, 0);
+        tracker.recordNoFill(UNIT_ID, 0);
+
+        tracker.recordFill(UNIT_ID);
+
+        assertTrue(tracker.isWorthRequesting(UNIT_ID, 0));
+        assertTrue(tracker.getFillRate(UNIT_ID) < 1);
+    }
+}
@@ -0,0 +1,44 @@
+package com.transo.admob.test.libs;
+
+import androidx.recyclerview.widget.RecyclerView;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Unit tests for {@link AdPositioning#nextSlot(int)}.
+ */
+public class AdPositioningTest {
+
+    @Test
+    public void nextSlot_withFixedPositionsOnly_shouldEndAfterLastOne() {
+        AdPositioning positioning = new AdPositioning.Builder()
+                .addFixedPosition(3).addFixedPosition(0).build();
+
+        assertEquals(0, positioning.nextSlot(0));
+        assertEquals(3, positioning.nextSlot(1));
+        assertEquals(3, positioning.nextSlot(3));
+        assertEquals(RecyclerView.NO_POSITION, positioning.nextSlot(4));
+    }
+
+    @Test
+    public void nextSlot_withRepeatingPositions_shouldRepeatAfterLastFixedPosition() {
+        AdPositioning positioning = new AdPositioning.Builder()
+                .addFixedPosition(2).enableRepeatingPositions(10).build();
+
+        assertEquals(2, positioning.nextSlot(0));
+        assertEquals(12, positioning.nextSlot(3));
+        assertEquals(12, positioning.nextSlot(12));
+        assertEquals(22, positioning.nextSlot(13));
+    }
+
+    @Test
+    public void nextSlot_withoutFixedPositions_shouldStartAfterFirstInterval() {
+        AdPositioning positioning = new AdPositioning.Builder()
+                .enableRepeatingPositions(5).build();
+
+        assertEquals(5, positioning.nextSlot(0));
+        assertEquals(10, positioning.nextSlot(6));
+    }
+}
@@ -0,0 +1,166 @@
+package com.transo.admob.test.libs;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.mopub.nativeads.MoPubNative;
+import com.mopub.nativeads.NativeAd;
+import com.mopub.nativeads.NativeErrorCode;
+import com.transo.admob.test.callback.NativeAdsCallback;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for {@link NativeAdRequestCoalescer}, with a fake source that holds requests until
+ * told to answer them. The coalescer never looks into its ads, so they are {@code null} here.
+ */
+public class NativeAdRequestCoalescerTest {
+
+    private static final String UNIT_ID = "unit";
+
+    private final List<Runnable> mPosted = new ArrayList<>();
+    private final List<String> mEvents = new ArrayList<>();
+    private FakeSource mSource;
+    private AdFillTracker mFillTracker;
+    private NativeAdRequestCoalescer mCoalescer;
+
+    @Before
+    public void setUp() {
+        mSource = new FakeSource();
+        mFillTracker = new AdFillTracker(null, new Random(0));
+        mCoalescer = new NativeAdRequestCoalescer(mPosted::add, 2);
+    }
+
+    @Test
+    public void subscribe_shouldRequestUpToConcurrencyLimit() {
+        subscribe("a");
+        subscribe("b");
+        subscribe("c");
+
+        assertEquals(2, mSource.listeners.size());
+        assertEquals(2, mCoalescer.getInFlightRequestCount(UNIT_ID));
+        assertEquals(3, mCoalescer.getWaitingCallerCount(UNIT_ID));
+    }
+
+    @Test
+    public void onNativeLoad_shouldServeOldestCallerAndRequestForWaitingOne() {
+        subscribe("a");
+        subscribe("b");
+        subscribe("c");
+
+        mSource.listeners.poll().onNativeLoad(null);
+
+        assertEquals(1, mEvents.size());
+        assertEquals("a loaded", mEvents.get(0));
+        assertEquals(2, mSource.listeners.size());
+        assertEquals(2, mCoalescer.getWaitingCallerCount(UNIT_ID));
+    }
+
+    @Test
+    public void onNativeFail_shouldFailOnlyOldestCallerAndRequestForTheOthers() {
+        subscribe("a");
+        subscribe("b");
+        subscribe("c");
+
+        mSource.listeners.poll().onNativeFail(NativeErrorCode.NETWORK_TIMEOUT);
+
+        assertEquals(1, mEvents.size());
+        assertEquals("a failed", mEvents.get(0));
+        assertEquals(2, mSource.listeners.size());
+        assertEquals(2, mCoalescer.getInFlightRequestCount(UNIT_ID));
+
+        mSource.listeners.poll().onNativeLoad(null);
+        mSource.listeners.poll().onNativeLoad(null);
+
+        assertEquals("b loaded", mEvents.get(1));
+        assertEquals("c loaded", mEvents.get(2));
+        assertEquals(0, mCoalescer.getInFlightRequestCount(UNIT_ID));
+        assertEquals(1, mSource.releaseCount);
+    }
+
+    @Test
+    public void onNativeFail_withNoFill_shouldPostFailureOfUncoveredCallers() {
+        mCoalescer.setMaxConcurrentRequests(1);
+        subscribe("a");
+        subscribe("b");
+
+        mSource.listeners.poll().onNativeFail(NativeErrorCode.NETWORK_NO_FILL);
+
+        assertTrue(mSource.listeners.isEmpty());
+        assertEquals(1, mEvents.size());
+        assertEquals("a failed", mEvents.get(0));
+        assertEquals(1, mPosted.size());
+
+        mPosted.get(0).run();
+
+        assertEquals("b failed", mEvents.get(1));
+        assertEquals(0, mCoalescer.getWaitingCallerCount(UNIT_ID));
+        assertEquals(1, mSource.releaseCount);
+    }
+
+    @Test
+    public void onNativeFail_beforeRequestReturns_shouldPostFailure() {
+        mSource.failing = true;
+
+        subscribe("a");
+
+        assertTrue(mEvents.isEmpty());
+        assertEquals(1, mPosted.size());
+        assertEquals(0, mCoalescer.getInFlightRequestCount(UNIT_ID));
+        assertEquals(1, mSource.releaseCount);
+
+        mPosted.get(0).run();
+
+        assertEquals("a failed", mEvents.get(0));
+    }
+
+    private void subscribe(@NonNull final String name) {
+        mCoalescer.subscribe(UNIT_ID, "layout", () -> mSource, mFillTracker,
+                new NativeAdsCallback() {
+
+                    @Override
+                    public void onNative(NativeAd nativeAd) {
+                        mEvents.add(name + " loaded");
+                    }
+
+                    @Override
+                    public void onFail() {
+                        mEvents.add(name + " failed");
+                    }
+                });
+    }
+
+    private static final class FakeSource implements NativeAdRequestCoalescer.Source {
+
+        final ArrayDeque<MoPubNative.MoPubNativeNetworkListener> listeners = new ArrayDeque<>();
+        boolean failing;
+        int releaseCount;
+
+        @Override
+        public void makeRequest(@NonNull MoPubNative.MoPubNativeNetworkListener listener) {
+            if (failing) {
+                listener.onNativeFail(NativeErrorCode.NETWORK_INVALID_STATE);
+            } else {
+                listeners.offer(listener);
+            }
+        }
+
+        @Override
+        public void discard(@Nullable NativeAd nativeAd) {
+        }
+
+        @Override
+        public void release() {
+            releaseCount++;
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package com.transo.admob.test.libs;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+
+import com.mopub.nativeads.NativeAd;
+import com.transo.admob.test.callback.NativeAdsCallback;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for {@link NativeAdsPool}, with a fake environment that holds requests until told
+ * to answer them and runs scheduled tasks when its clock is advanced. The pool never looks into
+ * its ads, so they are {@code null} here.
+ */
+public class NativeAdsPoolTest {
+
+    private static final long TTL_MILLIS = 1000;
+
+    private FakeEnvironment mEnvironment;
+    private NativeAdsPool mPool;
+
+    @Before
+    public void setUp() {
+        mEnvironment = new FakeEnvironment();
+        mPool = new NativeAdsPool(mEnvironment, null, "unit", 1, 2, TTL_MILLIS);
+    }
+
+    @Test
+    public void refill_shouldRequestUpToCapacityOnce() {
+        mPool.refill();
+        mPool.refill();
+
+        assertEquals(2, mEnvironment.callbacks.size());
+    }
+
+    @Test
+    public void dequeue_shouldHandOutLoadedAdAndRefillItsSlot() {
+        mPool.refill();
+        mEnvironment.callbacks.poll().onNative(null);
+
+        assertEquals(1, mPool.size());
+        mPool.dequeue();
+
+        assertEquals(0, mPool.size());
+        assertEquals(2, mEnvironment.callbacks.size());
+    }
+
+    @Test
+    public void expiredAds_shouldBeDestroyedWithoutPolling() {
+        mPool.refill();
+        mEnvironment.callbacks.poll().onNative(null);
+        mEnvironment.advance(TTL_MILLIS / 2);
+        mEnvironment.callbacks.poll().onNative(null);
+
+        mEnvironment.advance(TTL_MILLIS / 2);
+        assertEquals(1, mEnvironment.destroyedCount);
+
+        mEnvironment.advance(TTL_MILLIS / 2);
+        assertEquals(2, mEnvironment.destroyedCount);
+        assertTrue(mEnvironment.scheduled.isEmpty());
+    }
+
+    @Test
+    public void destroy_shouldDestroyPooledAndLateAds() {
+        mPool.refill();
+        mEnvironment.callbacks.poll().onNative(null);
+
+        mPool.destroy();
+        mEnvironment.callbacks.poll().onNative(null);
+
+        assertEquals(2, mEnvironment.destroyedCount);
+        assertTrue(mEnvironment.scheduled.isEmpty());
+    }
+
+    @Test
+    public void expiredAds_shouldBeReplaced() {
+        mPool.refill();
+        mEnvironment.callbacks.poll().onNative(null);
+        mEnvironment.callbacks.poll().onNative(null);
+
+        mEnvironment.advance(TTL_MILLIS);
+
+        assertEquals(2, mEnvironment.destroyedCount);
+        assertEquals(2, mEnvironment.callbacks.size());
+    }
+
+    @Test
+    public void refill_withSynchronousFailure_shouldRetryLater() {
+        mEnvironment.failing = true;
+
+        mPool.refill();
+
+        assertEquals(2, mEnvironment.loadCount);
+        assertEquals(1, mEnvironment.scheduled.size());
+
+        mEnvironment.failing = false;
+        mEnvironment.advance(TimeUnit.MINUTES.toMillis(5));
+
+        assertEquals(4, mEnvironment.loadCount);
+        assertEquals(2, mEnvironment.callbacks.size());
+    }
+
+    private static class FakeEnvironment implements NativeAdsPool.Environment {
+
+        final ArrayDeque<NativeAdsCallback> callbacks = new ArrayDeque<>();
+        final Map<Runnable, Long> scheduled = new LinkedHashMap<>();
+        boolean failing;
+        int loadCount;
+        int destroyedCount;
+        long now;
+
+        void advance(long millis) {
+            now += millis;
+            for (Map.Entry<Runnable, Long> task : new ArrayList<>(scheduled.entrySet())) {
+                if (task.getValue() <= now && scheduled.remove(task.getKey()) != null) {
+                    task.getKey().run();
+                }
+            }
+        }
+
+        @Override
+        public void load(@NonNull Context context, @NonNull String unitId, int layoutId,
+                         @NonNull NativeAdsCallback callback) {
+            loadCount++;
+            if (failing) {
+                callback.onFail();
+            } else {
+                callbacks.offer(callback);
+            }
+        }
+
+        @Override
+        public void destroy(@NonNull NativeAd nativeAd) {
+            destroyedCount++;
+        }
+
+        @Override
+        public long elapsedRealtime() {
+            return now;
+        }
+
+        @Override
+        public void postDelayed(@NonNull Runnable runnable, long delayMillis) {
+            scheduled.put(runnable, now + delayMillis);
+        }
+
+        @Override
+        public void removeCallbacks(@NonNull Runnable runnable) {
+            scheduled.remove(runnable);
+        }
+    }
+}
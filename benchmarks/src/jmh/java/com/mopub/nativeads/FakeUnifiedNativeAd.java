@@ -0,0 +1,97 @@
+package com.mopub.nativeads;
+
+import android.graphics.drawable.Drawable;
+import android.net.Uri;
+
+import com.google.android.gms.ads.formats.NativeAd;
+import com.google.android.gms.ads.formats.UnifiedNativeAd;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A {@link UnifiedNativeAd} with a typical set of assets.
+ */
+class FakeUnifiedNativeAd extends UnifiedNativeAd {
+
+    private final List<NativeAd.Image> mImages =
+            Collections.singletonList(new FakeImage("https://example.com/main.png"));
+    private final NativeAd.Image mIcon = new FakeImage("https://example.com/icon.png");
+
+    @Override
+    public String getHeadline() {
+        return "Headline";
+    }
+
+    @Override
+    public String getBody() {
+        return "Body text of the ad";
+    }
+
+    @Override
+    public String getCallToAction() {
+        return "Install";
+    }
+
+    @Override
+    public List<NativeAd.Image> getImages() {
+        return mImages;
+    }
+
+    @Override
+    public NativeAd.Image getIcon() {
+        return mIcon;
+    }
+
+    @Override
+    public Double getStarRating() {
+        return 4.5;
+    }
+
+    @Override
+    public String getStore() {
+        return "Google Play";
+    }
+
+    @Override
+    public String getPrice() {
+        return "Free";
+    }
+
+    @Override
+    public String getAdvertiser() {
+        return "Advertiser";
+    }
+
+    @Override
+    public void cancelUnconfirmedClick() {
+    }
+
+    @Override
+    public void destroy() {
+    }
+
+    private static class FakeImage extends NativeAd.Image {
+
+        private final Uri mUri;
+
+        FakeImage(String url) {
+            mUri = Uri.parse(url);
+        }
+
+        @Override
+        public Drawable getDrawable() {
+            return null;
+        }
+
+        @Override
+        public Uri getUri() {
+            return mUri;
+        }
+
+        @Override
+        public double getScale() {
+            return 1;
+        }
+    }
+}
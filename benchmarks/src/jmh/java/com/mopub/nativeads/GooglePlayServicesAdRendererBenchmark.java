@@ -0,0 +1,129 @@
+package com.mopub.nativeads;
+
+import android.content.Context;
+import android.view.View;
+import android.widget.FrameLayout;
+import android.widget.ImageView;
+import android.widget.TextView;
+
+import com.google.android.gms.ads.formats.UnifiedNativeAdView;
+import com.mopub.nativeads.GooglePlayServicesAdRenderer.GoogleStaticNativeViewHolder;
+import com.mopub.nativeads.GooglePlayServicesNative.GooglePlayServicesNativeAd;
+import com.transo.admob.test.R;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.WeakHashMap;
+
+/**
+ * Benchmarks binding an ad to an ad view with {@link GooglePlayServicesAdRenderer}, for a
+ * recycled view and for a view seen for the first time. The recycled view is also bound by
+ * {@link WeakHashMapAdRenderer}, the same renderer with the {@link WeakHashMap} view holder
+ * lookup it had before, so that both bind paths run the same code through the same views.
+ */
+@State(Scope.Thread)
+public class GooglePlayServicesAdRendererBenchmark {
+
+    private static final int LAYOUT_ID = 1;
+    private static final int UNIFIED_NATIVE_AD_VIEW_ID = 2;
+    private static final int TITLE_ID = 3;
+    private static final int ICON_IMAGE_ID = 4;
+    private static final int CALL_TO_ACTION_ID = 5;
+    private static final int PRIVACY_ICON_ID = 6;
+    private static final int AD_CHOICES_CONTAINER_ID = 7;
+
+    private final Context mContext = new Context();
+    private GooglePlayServicesAdRenderer mRenderer;
+    private GooglePlayServicesAdRenderer mWeakHashMapRenderer;
+    private GooglePlayServicesNativeAd mNativeAd;
+    private View mAdView;
+
+    @Setup
+    public void setUp() {
+        MediaViewBinder viewBinder = new MediaViewBinder.Builder(LAYOUT_ID)
+                .titleId(TITLE_ID)
+                .iconImageId(ICON_IMAGE_ID)
+                .callToActionId(CALL_TO_ACTION_ID)
+                .privacyInformationIconImageId(PRIVACY_ICON_ID)
+                .addExtra(GooglePlayServicesAdRenderer.VIEW_BINDER_KEY_AD_CHOICES_ICON_CONTAINER,
+                        AD_CHOICES_CONTAINER_ID)
+                .addExtra(GooglePlayServicesAdRenderer.VIEW_BINDER_KEY_UNIFIED_NATIVE_AD_VIEW,
+                        UNIFIED_NATIVE_AD_VIEW_ID)
+                .build();
+        mRenderer = new GooglePlayServicesAdRenderer(viewBinder);
+        mWeakHashMapRenderer = new WeakHashMapAdRenderer(viewBinder);
+
+        mNativeAd = new GooglePlayServicesNativeAd(null);
+        mNativeAd.prepareUnifiedNativeAd(new FakeUnifiedNativeAd());
+
+        mAdView = createAdView();
+        mRenderer.renderAdView(mAdView, mNativeAd);
+        mWeakHashMapRenderer.renderAdView(mAdView, mNativeAd);
+    }
+
+    @Benchmark
+    public View renderAdView_recycledView() {
+        mRenderer.renderAdView(mAdView, mNativeAd);
+        return mAdView;
+    }
+
+    @Benchmark
+    public View renderAdView_recycledView_weakHashMap() {
+        mWeakHashMapRenderer.renderAdView(mAdView, mNativeAd);
+        return mAdView;
+    }
+
+    @Benchmark
+    public View renderAdView_newView() {
+        // Forces GoogleStaticNativeViewHolder.fromViewBinder, as for a view bound the first time.
+        mAdView.setTag(R.id.google_ad_view_holder, null);
+        mRenderer.renderAdView(mAdView, mNativeAd);
+        return mAdView;
+    }
+
+    private View createAdView() {
+        UnifiedNativeAdView adView = new UnifiedNativeAdView(mContext);
+        adView.setId(UNIFIED_NATIVE_AD_VIEW_ID);
+        adView.addView(withId(new TextView(mContext), TITLE_ID));
+        adView.addView(withId(new ImageView(mContext), ICON_IMAGE_ID));
+        adView.addView(withId(new TextView(mContext), CALL_TO_ACTION_ID));
+        FrameLayout adChoicesContainer = withId(new FrameLayout(mContext), AD_CHOICES_CONTAINER_ID);
+        adChoicesContainer.addView(withId(new ImageView(mContext), PRIVACY_ICON_ID));
+        adView.addView(adChoicesContainer);
+        return adView;
+    }
+
+    private static <T extends View> T withId(T view, int id) {
+        view.setId(id);
+        return view;
+    }
+
+    /**
+     * The renderer with its view holders kept in a {@link WeakHashMap}, as before they were
+     * kept on the view tag.
+     */
+    private static final class WeakHashMapAdRenderer extends GooglePlayServicesAdRenderer {
+
+        private final WeakHashMap<View, GoogleStaticNativeViewHolder> mViewHolderMap =
+                new WeakHashMap<>();
+        private final MediaViewBinder mViewBinder;
+
+        WeakHashMapAdRenderer(MediaViewBinder viewBinder) {
+            super(viewBinder);
+            mViewBinder = viewBinder;
+        }
+
+        @Override
+        GoogleStaticNativeViewHolder getViewHolder(View view) {
+            GoogleStaticNativeViewHolder viewHolder = mViewHolderMap.get(view);
+            if (viewHolder == null) {
+                viewHolder = GoogleStaticNativeViewHolder.fromViewBinder(view, mViewBinder);
+                mViewHolderMap.put(view, viewHolder);
+            }
+            return viewHolder;
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.mopub.nativeads;
+
+import android.content.Context;
+
+import com.google.android.gms.ads.formats.NativeAdOptions;
+import com.mopub.nativeads.GooglePlayServicesNative.GooglePlayServicesNativeAd;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Benchmarks the per-ad work of {@link GooglePlayServicesNativeAd}: building a request from the
+ * local extras and mapping a loaded Google ad to MoPub assets.
+ */
+@State(Scope.Thread)
+public class GooglePlayServicesNativeAdBenchmark {
+
+    private static final String AD_UNIT_ID = "ca-app-pub-0000000000000000/0000000000";
+
+    private final Context mContext = new Context();
+    private final Map<String, Object> mLocalExtras = new HashMap<>();
+    private final FakeUnifiedNativeAd mUnifiedNativeAd = new FakeUnifiedNativeAd();
+    private GooglePlayServicesNativeAd mNativeAd;
+
+    @Setup
+    public void setUp() {
+        mLocalExtras.put("orientation_preference", NativeAdOptions.ORIENTATION_PORTRAIT);
+        mLocalExtras.put("ad_choices_placement", NativeAdOptions.ADCHOICES_TOP_RIGHT);
+        mLocalExtras.put("contentUrl", "https://example.com/article");
+        mLocalExtras.put("tagForChildDirectedTreatment", false);
+        mLocalExtras.put(GooglePlayServicesNative.KEY_EXTRA_REQUEST_TIMEOUT_MILLIS, 5000L);
+        mLocalExtras.put(GooglePlayServicesNative.KEY_EXTRA_RENDERABLE_ASSETS,
+                EnumSet.of(RequestParameters.NativeAdAsset.TITLE,
+                        RequestParameters.NativeAdAsset.ICON_IMAGE));
+        mNativeAd = new GooglePlayServicesNativeAd(null);
+    }
+
+    @Benchmark
+    public GooglePlayServicesNativeAd loadAd() {
+        // A fresh ad per request, as GooglePlayServicesNative.loadNativeAd does.
+        GooglePlayServicesNativeAd nativeAd = new GooglePlayServicesNativeAd(null);
+        nativeAd.loadAd(mContext, AD_UNIT_ID, mLocalExtras);
+        return nativeAd;
+    }
+
+    @Benchmark
+    public GooglePlayServicesNativeAd prepareUnifiedNativeAd() {
+        mNativeAd.prepareUnifiedNativeAd(mUnifiedNativeAd);
+        return mNativeAd;
+    }
+
+    @Benchmark
+    public GooglePlayServicesRequestTemplate requestTemplateObtain() {
+        return GooglePlayServicesRequestTemplate.obtain(AD_UNIT_ID, mLocalExtras);
+    }
+
+    @Benchmark
+    public GooglePlayServicesRequestPolicy requestPolicyFromLocalExtras() {
+        return GooglePlayServicesRequestPolicy.fromLocalExtras(mLocalExtras);
+    }
+
+    @Benchmark
+    public GooglePlayServicesImagePrecacher imagePrecacherFromLocalExtras() {
+        return GooglePlayServicesImagePrecacher.fromLocalExtras(mLocalExtras);
+    }
+}
@@ -0,0 +1,20 @@
+package android.content;
+
+import java.io.File;
+
+/**
+ * JVM stand-in for the Android class of the same name, used by the benchmarks.
+ */
+public class Context {
+
+    public Context getApplicationContext() {
+        return this;
+    }
+
+    public File getCacheDir() {
+        return null;
+    }
+
+    public void registerComponentCallbacks(ComponentCallbacks callback) {
+    }
+}
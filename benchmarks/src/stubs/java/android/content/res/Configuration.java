@@ -0,0 +1,7 @@
+package android.content.res;
+
+/**
+ * JVM stand-in for the Android class of the same name, used by the benchmarks.
+ */
+public final class Configuration {
+}
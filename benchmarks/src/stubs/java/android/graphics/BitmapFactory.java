@@ -0,0 +1,19 @@
+package android.graphics;
+
+/**
+ * JVM stand-in for the Android class of the same name, used by the benchmarks. Nothing can be
+ * decoded.
+ */
+public class BitmapFactory {
+
+    public static class Options {
+        public boolean inJustDecodeBounds;
+        public int inSampleSize;
+        public int outWidth;
+        public int outHeight;
+    }
+
+    public static Bitmap decodeByteArray(byte[] data, int offset, int length, Options options) {
+        return null;
+    }
+}
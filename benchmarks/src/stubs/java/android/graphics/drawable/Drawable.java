@@ -0,0 +1,7 @@
+package android.graphics.drawable;
+
+/**
+ * JVM stand-in for the Android class of the same name, used by the benchmarks.
+ */
+public abstract class Drawable {
+}
@@ -0,0 +1,22 @@
+package android.net;
+
+/**
+ * JVM stand-in for the Android class of the same name, used by the benchmarks.
+ */
+public class Uri {
+
+    private final String mUriString;
+
+    private Uri(String uriString) {
+        mUriString = uriString;
+    }
+
+    public static Uri parse(String uriString) {
+        return new Uri(uriString);
+    }
+
+    @Override
+    public String toString() {
+        return mUriString;
+    }
+}
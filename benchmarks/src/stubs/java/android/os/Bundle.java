@@ -0,0 +1,24 @@
+package android.os;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * JVM stand-in for the Android class of the same name, used by the benchmarks.
+ */
+public class Bundle {
+
+    private final Map<String, Object> mValues = new HashMap<>();
+
+    public void putString(String key, String value) {
+        mValues.put(key, value);
+    }
+
+    public String getString(String key) {
+        return (String) mValues.get(key);
+    }
+
+    public boolean isEmpty() {
+        return mValues.isEmpty();
+    }
+}
@@ -0,0 +1,25 @@
+package android.os;
+
+/**
+ * JVM stand-in for the Android class of the same name, used by the benchmarks. Scheduled
+ * callbacks are dropped.
+ */
+public class Handler {
+
+    public Handler() {
+    }
+
+    public Handler(Looper looper) {
+    }
+
+    public final boolean post(Runnable runnable) {
+        return true;
+    }
+
+    public final boolean postDelayed(Runnable runnable, long delayMillis) {
+        return true;
+    }
+
+    public final void removeCallbacks(Runnable runnable) {
+    }
+}
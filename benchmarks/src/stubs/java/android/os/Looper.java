@@ -0,0 +1,22 @@
+package android.os;
+
+/**
+ * JVM stand-in for the Android class of the same name, used by the benchmarks.
+ */
+public final class Looper {
+
+    private static final Looper sMainLooper = new Looper();
+    private static final MessageQueue sQueue = new MessageQueue();
+
+    public static Looper getMainLooper() {
+        return sMainLooper;
+    }
+
+    public static Looper myLooper() {
+        return sMainLooper;
+    }
+
+    public static MessageQueue myQueue() {
+        return sQueue;
+    }
+}
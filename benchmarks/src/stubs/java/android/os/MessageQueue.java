@@ -0,0 +1,18 @@
+package android.os;
+
+/**
+ * JVM stand-in for the Android class of the same name, used by the benchmarks. Idle handlers
+ * never run.
+ */
+public final class MessageQueue {
+
+    public interface IdleHandler {
+        boolean queueIdle();
+    }
+
+    public void addIdleHandler(IdleHandler handler) {
+    }
+
+    public void removeIdleHandler(IdleHandler handler) {
+    }
+}
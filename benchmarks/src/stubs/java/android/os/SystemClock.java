@@ -0,0 +1,19 @@
+package android.os;
+
+/**
+ * JVM stand-in for the Android class of the same name, used by the benchmarks.
+ */
+public final class SystemClock {
+
+    public static long elapsedRealtime() {
+        return System.nanoTime() / 1000000;
+    }
+
+    public static long uptimeMillis() {
+        return System.nanoTime() / 1000000;
+    }
+
+    public static long elapsedRealtimeNanos() {
+        return System.nanoTime();
+    }
+}
@@ -0,0 +1,66 @@
+package android.util;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * JVM stand-in for the Android class of the same name, used by the benchmarks.
+ */
+public class LruCache<K, V> {
+
+    private final LinkedHashMap<K, V> mMap = new LinkedHashMap<>(0, 0.75f, true);
+    private int mMaxSize;
+    private int mSize;
+
+    public LruCache(int maxSize) {
+        mMaxSize = maxSize;
+    }
+
+    public final synchronized V get(K key) {
+        return mMap.get(key);
+    }
+
+    public final synchronized V put(K key, V value) {
+        V previous = mMap.put(key, value);
+        mSize += sizeOf(key, value);
+        if (previous != null) {
+            mSize -= sizeOf(key, previous);
+        }
+        trimToSize(mMaxSize);
+        return previous;
+    }
+
+    public final synchronized V remove(K key) {
+        V previous = mMap.remove(key);
+        if (previous != null) {
+            mSize -= sizeOf(key, previous);
+        }
+        return previous;
+    }
+
+    public synchronized void trimToSize(int maxSize) {
+        Iterator<Map.Entry<K, V>> iterator = mMap.entrySet().iterator();
+        while (mSize > maxSize && iterator.hasNext()) {
+            Map.Entry<K, V> eldest = iterator.next();
+            iterator.remove();
+            mSize -= sizeOf(eldest.getKey(), eldest.getValue());
+        }
+    }
+
+    public final void evictAll() {
+        trimToSize(-1);
+    }
+
+    public final synchronized int size() {
+        return mSize;
+    }
+
+    public final synchronized int maxSize() {
+        return mMaxSize;
+    }
+
+    protected int sizeOf(K key, V value) {
+        return 1;
+    }
+}
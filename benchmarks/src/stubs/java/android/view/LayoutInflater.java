@@ -0,0 +1,28 @@
+package android.view;
+
+import android.content.Context;
+
+/**
+ * JVM stand-in for the Android class of the same name, used by the benchmarks. Inflating
+ * returns an empty {@link ViewGroup}.
+ */
+public class LayoutInflater {
+
+    private final Context mContext;
+
+    private LayoutInflater(Context context) {
+        mContext = context;
+    }
+
+    public static LayoutInflater from(Context context) {
+        return new LayoutInflater(context);
+    }
+
+    public View inflate(int resource, ViewGroup root, boolean attachToRoot) {
+        ViewGroup view = new ViewGroup(mContext);
+        if (root != null && attachToRoot) {
+            root.addView(view);
+        }
+        return view;
+    }
+}
@@ -0,0 +1,85 @@
+package android.view;
+
+import android.content.Context;
+import android.util.SparseArray;
+
+/**
+ * JVM stand-in for the Android class of the same name, used by the benchmarks. Supports ids,
+ * keyed tags and a parent, which is all the adapter relies on.
+ */
+public class View {
+
+    private final Context mContext;
+    private int mId;
+    private Object mTag;
+    private SparseArray<Object> mKeyedTags;
+    ViewParent mParent;
+    private ViewGroup.LayoutParams mLayoutParams;
+
+    public View(Context context) {
+        mContext = context;
+    }
+
+    public Context getContext() {
+        return mContext;
+    }
+
+    public int getId() {
+        return mId;
+    }
+
+    public void setId(int id) {
+        mId = id;
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T extends View> T findViewById(int id) {
+        return (T) findViewTraversal(id);
+    }
+
+    View findViewTraversal(int id) {
+        return id == mId ? this : null;
+    }
+
+    public Object getTag() {
+        return mTag;
+    }
+
+    public void setTag(Object tag) {
+        mTag = tag;
+    }
+
+    public Object getTag(int key) {
+        return mKeyedTags != null ? mKeyedTags.get(key) : null;
+    }
+
+    public void setTag(int key, Object tag) {
+        if (mKeyedTags == null) {
+            mKeyedTags = new SparseArray<>();
+        }
+        mKeyedTags.put(key, tag);
+    }
+
+    public ViewParent getParent() {
+        return mParent;
+    }
+
+    public int getWidth() {
+        return 0;
+    }
+
+    public int getHeight() {
+        return 0;
+    }
+
+    public ViewGroup.LayoutParams getLayoutParams() {
+        return mLayoutParams;
+    }
+
+    public void setLayoutParams(ViewGroup.LayoutParams params) {
+        mLayoutParams = params;
+    }
+
+    public void setVisibility(int visibility) {
+    }
+}
@@ -0,0 +1,69 @@
+package android.view;
+
+import android.content.Context;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * JVM stand-in for the Android class of the same name, used by the benchmarks.
+ */
+public class ViewGroup extends View implements ViewParent {
+
+    public static class LayoutParams {
+
+        public int width;
+        public int height;
+
+        public LayoutParams(int width, int height) {
+            this.width = width;
+            this.height = height;
+        }
+    }
+
+    private final List<View> mChildren = new ArrayList<>();
+
+    public ViewGroup(Context context) {
+        super(context);
+    }
+
+    public void addView(View child) {
+        mChildren.add(child);
+        child.mParent = this;
+    }
+
+    public void removeView(View child) {
+        if (mChildren.remove(child)) {
+            child.mParent = null;
+        }
+    }
+
+    public void removeAllViews() {
+        for (View child : mChildren) {
+            child.mParent = null;
+        }
+        mChildren.clear();
+    }
+
+    public int getChildCount() {
+        return mChildren.size();
+    }
+
+    public View getChildAt(int index) {
+        return mChildren.get(index);
+    }
+
+    @Override
+    View findViewTraversal(int id) {
+        if (id == getId()) {
+            return this;
+        }
+        for (View child : mChildren) {
+            View view = child.findViewTraversal(id);
+            if (view != null) {
+                return view;
+            }
+        }
+        return null;
+    }
+}
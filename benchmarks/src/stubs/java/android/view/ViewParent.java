@@ -0,0 +1,7 @@
+package android.view;
+
+/**
+ * JVM stand-in for the Android interface of the same name, used by the benchmarks.
+ */
+public interface ViewParent {
+}
@@ -0,0 +1,22 @@
+package android.widget;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.drawable.Drawable;
+import android.view.View;
+
+/**
+ * JVM stand-in for the Android class of the same name, used by the benchmarks.
+ */
+public class ImageView extends View {
+
+    public ImageView(Context context) {
+        super(context);
+    }
+
+    public void setImageBitmap(Bitmap bitmap) {
+    }
+
+    public void setImageDrawable(Drawable drawable) {
+    }
+}
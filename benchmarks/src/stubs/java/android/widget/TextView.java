@@ -0,0 +1,24 @@
+package android.widget;
+
+import android.content.Context;
+import android.view.View;
+
+/**
+ * JVM stand-in for the Android class of the same name, used by the benchmarks.
+ */
+public class TextView extends View {
+
+    private CharSequence mText;
+
+    public TextView(Context context) {
+        super(context);
+    }
+
+    public void setText(CharSequence text) {
+        mText = text;
+    }
+
+    public CharSequence getText() {
+        return mText;
+    }
+}
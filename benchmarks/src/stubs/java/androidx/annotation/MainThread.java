@@ -0,0 +1,7 @@
+package androidx.annotation;
+
+/**
+ * JVM stand-in for the AndroidX annotation of the same name, used by the benchmarks.
+ */
+public @interface MainThread {
+}
@@ -0,0 +1,7 @@
+package com.google.ads.mediation.admob;
+
+/**
+ * JVM stand-in for the Google Mobile Ads class of the same name, used by the benchmarks.
+ */
+public class AdMobAdapter {
+}
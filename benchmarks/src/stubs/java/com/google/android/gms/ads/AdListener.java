@@ -0,0 +1,19 @@
+package com.google.android.gms.ads;
+
+/**
+ * JVM stand-in for the Google Mobile Ads class of the same name, used by the benchmarks.
+ */
+public abstract class AdListener {
+
+    public void onAdClicked() {
+    }
+
+    public void onAdImpression() {
+    }
+
+    public void onAdFailedToLoad(int errorCode) {
+    }
+
+    public void onAdLoaded() {
+    }
+}
@@ -0,0 +1,49 @@
+package com.google.android.gms.ads;
+
+import android.content.Context;
+
+import com.google.android.gms.ads.formats.NativeAdOptions;
+import com.google.android.gms.ads.formats.UnifiedNativeAd;
+
+/**
+ * JVM stand-in for the Google Mobile Ads class of the same name, used by the benchmarks.
+ * Requests are never sent.
+ */
+public class AdLoader {
+
+    private AdLoader() {
+    }
+
+    public void loadAd(AdRequest adRequest) {
+    }
+
+    public void loadAds(AdRequest adRequest, int maxNumberOfAds) {
+    }
+
+    public boolean isLoading() {
+        return false;
+    }
+
+    public static class Builder {
+
+        public Builder(Context context, String adUnitId) {
+        }
+
+        public Builder forUnifiedNativeAd(
+                UnifiedNativeAd.OnUnifiedNativeAdLoadedListener listener) {
+            return this;
+        }
+
+        public Builder withAdListener(AdListener listener) {
+            return this;
+        }
+
+        public Builder withNativeAdOptions(NativeAdOptions options) {
+            return this;
+        }
+
+        public AdLoader build() {
+            return new AdLoader();
+        }
+    }
+}
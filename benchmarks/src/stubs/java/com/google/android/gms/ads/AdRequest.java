@@ -0,0 +1,68 @@
+package com.google.android.gms.ads;
+
+import android.os.Bundle;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * JVM stand-in for the Google Mobile Ads class of the same name, used by the benchmarks.
+ */
+public final class AdRequest {
+
+    public static final int ERROR_CODE_INTERNAL_ERROR = 0;
+    public static final int ERROR_CODE_INVALID_REQUEST = 1;
+    public static final int ERROR_CODE_NETWORK_ERROR = 2;
+    public static final int ERROR_CODE_NO_FILL = 3;
+
+    public static final int TAG_FOR_UNDER_AGE_OF_CONSENT_UNSPECIFIED = -1;
+    public static final int TAG_FOR_UNDER_AGE_OF_CONSENT_FALSE = 0;
+    public static final int TAG_FOR_UNDER_AGE_OF_CONSENT_TRUE = 1;
+
+    private AdRequest() {
+    }
+
+    public static final class Builder {
+
+        private final List<String> mTestDevices = new ArrayList<>();
+        private final List<Bundle> mNetworkExtras = new ArrayList<>();
+        private String mRequestAgent;
+        private String mContentUrl;
+        private boolean mChildDirected;
+        private int mTagForUnderAgeOfConsent = TAG_FOR_UNDER_AGE_OF_CONSENT_UNSPECIFIED;
+
+        public Builder addTestDevice(String deviceId) {
+            mTestDevices.add(deviceId);
+            return this;
+        }
+
+        public Builder setRequestAgent(String requestAgent) {
+            mRequestAgent = requestAgent;
+            return this;
+        }
+
+        public Builder setContentUrl(String contentUrl) {
+            mContentUrl = contentUrl;
+            return this;
+        }
+
+        public Builder addNetworkExtrasBundle(Class<?> adapterClass, Bundle networkExtras) {
+            mNetworkExtras.add(networkExtras);
+            return this;
+        }
+
+        public Builder tagForChildDirectedTreatment(boolean childDirected) {
+            mChildDirected = childDirected;
+            return this;
+        }
+
+        public Builder setTagForUnderAgeOfConsent(int tagForUnderAgeOfConsent) {
+            mTagForUnderAgeOfConsent = tagForUnderAgeOfConsent;
+            return this;
+        }
+
+        public AdRequest build() {
+            return new AdRequest();
+        }
+    }
+}
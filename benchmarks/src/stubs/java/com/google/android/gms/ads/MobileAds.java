@@ -0,0 +1,15 @@
+package com.google.android.gms.ads;
+
+import android.content.Context;
+
+/**
+ * JVM stand-in for the Google Mobile Ads class of the same name, used by the benchmarks.
+ */
+public class MobileAds {
+
+    public static void initialize(Context context) {
+    }
+
+    public static void initialize(Context context, String applicationCode) {
+    }
+}
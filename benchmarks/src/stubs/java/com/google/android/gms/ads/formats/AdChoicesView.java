@@ -0,0 +1,14 @@
+package com.google.android.gms.ads.formats;
+
+import android.content.Context;
+import android.widget.FrameLayout;
+
+/**
+ * JVM stand-in for the Google Mobile Ads class of the same name, used by the benchmarks.
+ */
+public final class AdChoicesView extends FrameLayout {
+
+    public AdChoicesView(Context context) {
+        super(context);
+    }
+}
@@ -0,0 +1,19 @@
+package com.google.android.gms.ads.formats;
+
+import android.graphics.drawable.Drawable;
+import android.net.Uri;
+
+/**
+ * JVM stand-in for the Google Mobile Ads class of the same name, used by the benchmarks.
+ */
+public abstract class NativeAd {
+
+    public abstract static class Image {
+
+        public abstract Drawable getDrawable();
+
+        public abstract Uri getUri();
+
+        public abstract double getScale();
+    }
+}
@@ -0,0 +1,44 @@
+package com.google.android.gms.ads.formats;
+
+/**
+ * JVM stand-in for the Google Mobile Ads class of the same name, used by the benchmarks.
+ */
+public final class NativeAdOptions {
+
+    public static final int ORIENTATION_ANY = 0;
+    public static final int ORIENTATION_PORTRAIT = 1;
+    public static final int ORIENTATION_LANDSCAPE = 2;
+
+    public static final int ADCHOICES_TOP_LEFT = 0;
+    public static final int ADCHOICES_TOP_RIGHT = 1;
+    public static final int ADCHOICES_BOTTOM_RIGHT = 2;
+    public static final int ADCHOICES_BOTTOM_LEFT = 3;
+
+    private final int mImageOrientation;
+    private final int mAdChoicesPlacement;
+
+    private NativeAdOptions(Builder builder) {
+        mImageOrientation = builder.mImageOrientation;
+        mAdChoicesPlacement = builder.mAdChoicesPlacement;
+    }
+
+    public static final class Builder {
+
+        private int mImageOrientation = ORIENTATION_ANY;
+        private int mAdChoicesPlacement = ADCHOICES_TOP_RIGHT;
+
+        public Builder setImageOrientation(int imageOrientation) {
+            mImageOrientation = imageOrientation;
+            return this;
+        }
+
+        public Builder setAdChoicesPlacement(int adChoicesPlacement) {
+            mAdChoicesPlacement = adChoicesPlacement;
+            return this;
+        }
+
+        public NativeAdOptions build() {
+            return new NativeAdOptions(this);
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.google.android.gms.ads.formats;
+
+import java.util.List;
+
+/**
+ * JVM stand-in for the Google Mobile Ads class of the same name, used by the benchmarks.
+ */
+public abstract class UnifiedNativeAd {
+
+    public interface OnUnifiedNativeAdLoadedListener {
+        void onUnifiedNativeAdLoaded(UnifiedNativeAd unifiedNativeAd);
+    }
+
+    public abstract String getHeadline();
+
+    public abstract String getBody();
+
+    public abstract String getCallToAction();
+
+    public abstract List<NativeAd.Image> getImages();
+
+    public abstract NativeAd.Image getIcon();
+
+    public abstract Double getStarRating();
+
+    public abstract String getStore();
+
+    public abstract String getPrice();
+
+    public abstract String getAdvertiser();
+
+    public abstract void cancelUnconfirmedClick();
+
+    public abstract void destroy();
+}
@@ -0,0 +1,46 @@
+package com.google.android.gms.ads.formats;
+
+import android.content.Context;
+import android.view.View;
+import android.widget.FrameLayout;
+
+/**
+ * JVM stand-in for the Google Mobile Ads class of the same name, used by the benchmarks.
+ */
+public final class UnifiedNativeAdView extends FrameLayout {
+
+    private UnifiedNativeAd mNativeAd;
+
+    public UnifiedNativeAdView(Context context) {
+        super(context);
+    }
+
+    public void setHeadlineView(View view) {
+    }
+
+    public void setBodyView(View view) {
+    }
+
+    public void setCallToActionView(View view) {
+    }
+
+    public void setIconView(View view) {
+    }
+
+    public void setAdvertiserView(View view) {
+    }
+
+    public void setMediaView(MediaView mediaView) {
+    }
+
+    public void setAdChoicesView(AdChoicesView adChoicesView) {
+    }
+
+    public void setNativeAd(UnifiedNativeAd nativeAd) {
+        mNativeAd = nativeAd;
+    }
+
+    public void destroy() {
+        mNativeAd = null;
+    }
+}
@@ -0,0 +1,7 @@
+package com.mopub.common;
+
+/**
+ * JVM stand-in for the MoPub interface of the same name, used by the benchmarks.
+ */
+public interface AdapterConfiguration {
+}
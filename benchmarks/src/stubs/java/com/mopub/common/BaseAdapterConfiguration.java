@@ -0,0 +1,26 @@
+package com.mopub.common;
+
+import android.content.Context;
+
+import java.util.Map;
+
+/**
+ * JVM stand-in for the MoPub class of the same name, used by the benchmarks.
+ */
+public abstract class BaseAdapterConfiguration implements AdapterConfiguration {
+
+    public abstract String getAdapterVersion();
+
+    public abstract String getBiddingToken(Context context);
+
+    public abstract String getMoPubNetworkName();
+
+    public abstract String getNetworkSdkVersion();
+
+    public abstract void initializeNetwork(Context context, Map<String, String> configuration,
+                                           OnNetworkInitializationFinishedListener listener);
+
+    public void setCachedInitializationParameters(Context context,
+                                                  Map<String, String> configuration) {
+    }
+}
@@ -0,0 +1,12 @@
+package com.mopub.common;
+
+/**
+ * JVM stand-in for the MoPub class of the same name, used by the benchmarks. The disk cache is
+ * always empty.
+ */
+public class CacheService {
+
+    public static byte[] getFromDiskCache(String key) {
+        return null;
+    }
+}
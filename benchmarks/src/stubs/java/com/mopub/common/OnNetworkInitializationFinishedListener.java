@@ -0,0 +1,11 @@
+package com.mopub.common;
+
+import com.mopub.mobileads.MoPubErrorCode;
+
+/**
+ * JVM stand-in for the MoPub interface of the same name, used by the benchmarks.
+ */
+public interface OnNetworkInitializationFinishedListener {
+    void onNetworkInitializationFinished(Class<? extends AdapterConfiguration> clazz,
+                                         MoPubErrorCode moPubErrorCode);
+}
@@ -0,0 +1,13 @@
+package com.mopub.common;
+
+/**
+ * JVM stand-in for the MoPub class of the same name, used by the benchmarks.
+ */
+public final class Preconditions {
+
+    public static void checkNotNull(Object object) {
+        if (object == null) {
+            throw new NullPointerException();
+        }
+    }
+}
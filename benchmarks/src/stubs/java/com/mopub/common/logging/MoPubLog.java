@@ -0,0 +1,28 @@
+package com.mopub.common.logging;
+
+/**
+ * JVM stand-in for the MoPub class of the same name, used by the benchmarks. Nothing is logged.
+ */
+public class MoPubLog {
+
+    public interface MPLogEventType {
+    }
+
+    public enum AdapterLogEvent implements MPLogEventType {
+        CUSTOM,
+        CUSTOM_WITH_THROWABLE,
+        LOAD_ATTEMPTED,
+        LOAD_SUCCESS,
+        LOAD_FAILED,
+        SHOW_ATTEMPTED,
+        SHOW_SUCCESS,
+        SHOW_FAILED,
+        CLICKED,
+        DID_APPEAR,
+        DID_DISAPPEAR,
+        EXPIRED
+    }
+
+    public static void log(MPLogEventType logEventType, Object... args) {
+    }
+}
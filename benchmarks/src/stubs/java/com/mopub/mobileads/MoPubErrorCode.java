@@ -0,0 +1,9 @@
+package com.mopub.mobileads;
+
+/**
+ * JVM stand-in for the MoPub enum of the same name, used by the benchmarks.
+ */
+public enum MoPubErrorCode {
+    ADAPTER_INITIALIZATION_SUCCESS,
+    ADAPTER_CONFIGURATION_ERROR
+}
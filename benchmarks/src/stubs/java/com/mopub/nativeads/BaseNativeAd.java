@@ -0,0 +1,21 @@
+package com.mopub.nativeads;
+
+import android.view.View;
+
+/**
+ * JVM stand-in for the MoPub class of the same name, used by the benchmarks.
+ */
+public abstract class BaseNativeAd {
+
+    public abstract void prepare(View view);
+
+    public abstract void clear(View view);
+
+    public abstract void destroy();
+
+    protected final void notifyAdImpressed() {
+    }
+
+    protected final void notifyAdClicked() {
+    }
+}
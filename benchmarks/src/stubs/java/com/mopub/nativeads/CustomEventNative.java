@@ -0,0 +1,22 @@
+package com.mopub.nativeads;
+
+import android.content.Context;
+
+import java.util.Map;
+
+/**
+ * JVM stand-in for the MoPub class of the same name, used by the benchmarks.
+ */
+public abstract class CustomEventNative {
+
+    protected abstract void loadNativeAd(Context context,
+                                         CustomEventNativeListener customEventNativeListener,
+                                         Map<String, Object> localExtras,
+                                         Map<String, String> serverExtras);
+
+    public interface CustomEventNativeListener {
+        void onNativeAdLoaded(BaseNativeAd nativeAd);
+
+        void onNativeAdFailed(NativeErrorCode errorCode);
+    }
+}
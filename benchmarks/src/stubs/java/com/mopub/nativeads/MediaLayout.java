@@ -0,0 +1,14 @@
+package com.mopub.nativeads;
+
+import android.content.Context;
+import android.widget.FrameLayout;
+
+/**
+ * JVM stand-in for the MoPub class of the same name, used by the benchmarks.
+ */
+public class MediaLayout extends FrameLayout {
+
+    public MediaLayout(Context context) {
+        super(context);
+    }
+}
@@ -0,0 +1,86 @@
+package com.mopub.nativeads;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * JVM stand-in for the MoPub class of the same name, used by the benchmarks.
+ */
+public class MediaViewBinder {
+
+    final int layoutId;
+    final int mediaLayoutId;
+    final int titleId;
+    final int textId;
+    final int iconImageId;
+    final int callToActionId;
+    final int privacyInformationIconImageId;
+    final Map<String, Integer> extras;
+
+    private MediaViewBinder(Builder builder) {
+        this.layoutId = builder.layoutId;
+        this.mediaLayoutId = builder.mediaLayoutId;
+        this.titleId = builder.titleId;
+        this.textId = builder.textId;
+        this.iconImageId = builder.iconImageId;
+        this.callToActionId = builder.callToActionId;
+        this.privacyInformationIconImageId = builder.privacyInformationIconImageId;
+        this.extras = Collections.unmodifiableMap(builder.extras);
+    }
+
+    public static final class Builder {
+
+        private final int layoutId;
+        private int mediaLayoutId;
+        private int titleId;
+        private int textId;
+        private int iconImageId;
+        private int callToActionId;
+        private int privacyInformationIconImageId;
+        private final Map<String, Integer> extras = new HashMap<>();
+
+        public Builder(int layoutId) {
+            this.layoutId = layoutId;
+        }
+
+        public Builder mediaLayoutId(int mediaLayoutId) {
+            this.mediaLayoutId = mediaLayoutId;
+            return this;
+        }
+
+        public Builder titleId(int titleId) {
+            this.titleId = titleId;
+            return this;
+        }
+
+        public Builder textId(int textId) {
+            this.textId = textId;
+            return this;
+        }
+
+        public Builder iconImageId(int iconImageId) {
+            this.iconImageId = iconImageId;
+            return this;
+        }
+
+        public Builder callToActionId(int callToActionId) {
+            this.callToActionId = callToActionId;
+            return this;
+        }
+
+        public Builder privacyInformationIconImageId(int privacyInformationIconImageId) {
+            this.privacyInformationIconImageId = privacyInformationIconImageId;
+            return this;
+        }
+
+        public Builder addExtra(String key, int resId) {
+            this.extras.put(key, resId);
+            return this;
+        }
+
+        public MediaViewBinder build() {
+            return new MediaViewBinder(this);
+        }
+    }
+}
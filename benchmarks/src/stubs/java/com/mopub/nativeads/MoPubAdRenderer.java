@@ -0,0 +1,17 @@
+package com.mopub.nativeads;
+
+import android.content.Context;
+import android.view.View;
+import android.view.ViewGroup;
+
+/**
+ * JVM stand-in for the MoPub interface of the same name, used by the benchmarks.
+ */
+public interface MoPubAdRenderer<T extends BaseNativeAd> {
+
+    View createAdView(Context context, ViewGroup parent);
+
+    void renderAdView(View view, T ad);
+
+    boolean supports(BaseNativeAd nativeAd);
+}
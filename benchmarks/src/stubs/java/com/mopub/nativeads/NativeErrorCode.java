@@ -0,0 +1,23 @@
+package com.mopub.nativeads;
+
+/**
+ * JVM stand-in for the MoPub enum of the same name, used by the benchmarks.
+ */
+public enum NativeErrorCode {
+    EMPTY_AD_RESPONSE,
+    INVALID_RESPONSE,
+    IMAGE_DOWNLOAD_FAILURE,
+    CONNECTION_ERROR,
+    UNSPECIFIED,
+    NETWORK_INVALID_REQUEST,
+    NETWORK_TIMEOUT,
+    NETWORK_NO_FILL,
+    NETWORK_INVALID_STATE,
+    NATIVE_RENDERER_CONFIGURATION,
+    NATIVE_ADAPTER_CONFIGURATION_ERROR,
+    NATIVE_ADAPTER_NOT_FOUND;
+
+    public int getIntCode() {
+        return ordinal();
+    }
+}
@@ -0,0 +1,27 @@
+package com.mopub.nativeads;
+
+import android.content.Context;
+import android.widget.ImageView;
+
+import java.util.List;
+
+/**
+ * JVM stand-in for the MoPub class of the same name, used by the benchmarks. Images are
+ * reported as cached right away.
+ */
+public class NativeImageHelper {
+
+    public interface ImageListener {
+        void onImagesCached();
+
+        void onImagesFailedToCache(NativeErrorCode errorCode);
+    }
+
+    public static void preCacheImages(Context context, List<String> imageUrls,
+                                      ImageListener imageListener) {
+        imageListener.onImagesCached();
+    }
+
+    public static void loadImageView(String url, ImageView imageView) {
+    }
+}
@@ -0,0 +1,21 @@
+package com.mopub.nativeads;
+
+import android.widget.ImageView;
+import android.widget.TextView;
+
+/**
+ * JVM stand-in for the MoPub class of the same name, used by the benchmarks.
+ */
+public class NativeRendererHelper {
+
+    public static void addTextView(TextView textView, String contents) {
+        if (textView != null) {
+            textView.setText(contents);
+        }
+    }
+
+    public static void addPrivacyInformationIcon(ImageView privacyInformationIconImageView,
+                                                 String privacyInformationImageUrl,
+                                                 String privacyInformationClickthroughUrl) {
+    }
+}
@@ -0,0 +1,17 @@
+package com.mopub.nativeads;
+
+/**
+ * JVM stand-in for the MoPub class of the same name, used by the benchmarks.
+ */
+public class RequestParameters {
+
+    public enum NativeAdAsset {
+        TITLE,
+        TEXT,
+        ICON_IMAGE,
+        MAIN_IMAGE,
+        CALL_TO_ACTION_TEXT,
+        STAR_RATING,
+        SPONSORED
+    }
+}
@@ -0,0 +1,9 @@
+package com.transo.admob.test;
+
+/**
+ * JVM stand-in for the generated class of the same name, used by the benchmarks.
+ */
+public final class BuildConfig {
+
+    public static final boolean DEBUG = false;
+}
@@ -0,0 +1,13 @@
+package com.transo.admob.test;
+
+/**
+ * JVM stand-in for the generated resource class, limited to the ids the adapter uses.
+ */
+public final class R {
+
+    public static final class id {
+        public static final int google_ad_view_holder = 0x7f010001;
+        public static final int google_ad_view_layout_id = 0x7f010002;
+        public static final int google_ad_image_key = 0x7f010003;
+    }
+}